@@ -5,6 +5,8 @@ drop function if exists TenantAccessPredicate;
 go
 drop table if exists orders;
 go
+drop table if exists orders_archive;
+go
 drop sequence if exists orders_seq;
 go
 
@@ -32,6 +34,23 @@ CREATE NONCLUSTERED INDEX [NonClusteredIndex-TenantId] ON orders
 )WITH (PAD_INDEX = OFF, STATISTICS_NORECOMPUTE = OFF, SORT_IN_TEMPDB = OFF, DROP_EXISTING = OFF, ONLINE = OFF, ALLOW_ROW_LOCKS = ON, ALLOW_PAGE_LOCKS = ON, OPTIMIZE_FOR_SEQUENTIAL_KEY = OFF) ON [PRIMARY]
 GO
 
+-- Create archive table for old COMPLETED/CANCELLED orders (same layout as orders)
+create table orders_archive (
+	order_id bigint primary key, 
+	order_number varchar(50), 
+	tenant_id bigint not null, 
+	order_date date, 
+	order_status varchar(50), 
+	customername varchar(100)
+);
+go
+
+CREATE NONCLUSTERED INDEX [NonClusteredIndex-Archive-TenantId] ON orders_archive
+(
+	[tenant_id] ASC
+)
+GO
+
 -- Create sequence
 CREATE SEQUENCE orders_seq
  AS [bigint]
@@ -45,7 +64,9 @@ GO
 -- Create security policy for Row Level Security (filter for SELECT, block for INSERT/UPDATE/DELETE)
 CREATE SECURITY POLICY dbo.TenantAccessPolicy
 	ADD FILTER PREDICATE dbo.TenantAccessPredicate(tenant_id) ON dbo.orders ,
-	ADD BLOCK  PREDICATE dbo.TenantAccessPredicate(tenant_id) ON dbo.orders; 
+	ADD BLOCK  PREDICATE dbo.TenantAccessPredicate(tenant_id) ON dbo.orders ,
+	ADD FILTER PREDICATE dbo.TenantAccessPredicate(tenant_id) ON dbo.orders_archive ,
+	ADD BLOCK  PREDICATE dbo.TenantAccessPredicate(tenant_id) ON dbo.orders_archive; 
 go
 
 -- Insert test data
@@ -1,19 +1,11 @@
 -- Drop existing objects
 DROP POLICY IF EXISTS tenant_access_policy ON orders;
+DROP POLICY IF EXISTS tenant_access_policy ON orders_archive;
 DROP FUNCTION IF EXISTS tenant_access_predicate(bigint);
 DROP TABLE IF EXISTS orders;
+DROP TABLE IF EXISTS orders_archive;
 DROP SEQUENCE IF EXISTS orders_seq;
 
--- Create function for row level security predicate
-CREATE OR REPLACE FUNCTION tenant_access_predicate(tenant_id bigint)
-RETURNS BOOLEAN AS $$
-BEGIN
-    RETURN (
-        tenant_id = NULLIF(current_setting('app.tenant_id', TRUE), '')::bigint
-    );
-END;
-$$ LANGUAGE plpgsql STABLE;
-
 -- Create table
 CREATE TABLE orders (
     order_id bigint PRIMARY KEY,
@@ -27,6 +19,18 @@ CREATE TABLE orders (
 -- Create index on tenant_id
 CREATE INDEX idx_orders_tenant_id ON orders(tenant_id);
 
+-- Create archive table for old COMPLETED/CANCELLED orders (same layout as orders)
+CREATE TABLE orders_archive (
+    order_id bigint PRIMARY KEY,
+    order_number varchar(50),
+    tenant_id bigint NOT NULL,
+    order_date date,
+    order_status varchar(50),
+    customername varchar(100)
+);
+
+CREATE INDEX idx_orders_archive_tenant_id ON orders_archive(tenant_id);
+
 -- Create sequence
 CREATE SEQUENCE orders_seq
     AS bigint
@@ -36,13 +40,22 @@ CREATE SEQUENCE orders_seq
     MAXVALUE 9223372036854775807
     CACHE 1;
 
--- Enable Row Level Security
+-- Enable Row Level Security, FORCE applies it to the table owner as well
 ALTER TABLE orders ENABLE ROW LEVEL SECURITY;
+ALTER TABLE orders FORCE ROW LEVEL SECURITY;
 
 -- Create policy for SELECT (filter) and INSERT/UPDATE/DELETE (block)
+-- The predicate is inline (no plpgsql function), so the planner uses it as index condition on tenant_id
 CREATE POLICY tenant_access_policy ON orders
-    USING (tenant_access_predicate(tenant_id))
-    WITH CHECK (tenant_access_predicate(tenant_id));
+    USING (tenant_id = NULLIF(current_setting('app.tenant_id', TRUE), '')::bigint)
+    WITH CHECK (tenant_id = NULLIF(current_setting('app.tenant_id', TRUE), '')::bigint);
+
+ALTER TABLE orders_archive ENABLE ROW LEVEL SECURITY;
+ALTER TABLE orders_archive FORCE ROW LEVEL SECURITY;
+
+CREATE POLICY tenant_access_policy ON orders_archive
+    USING (tenant_id = NULLIF(current_setting('app.tenant_id', TRUE), '')::bigint)
+    WITH CHECK (tenant_id = NULLIF(current_setting('app.tenant_id', TRUE), '')::bigint);
 
 -- Insert test data
 -- Set session variables and insert data for tenant 1
@@ -0,0 +1,36 @@
+#!/usr/bin/env bash
+# Measures the throughput of concurrent single-order creates of one tenant.
+#
+# Run it once against the default path and once against an instance started with
+# --app.orders.create-batching.enabled=true, then compare the orders/s values.
+# Usage: benchmarks/create-throughput-benchmark.sh [orders] [concurrency] [tenantId] [url]
+
+set -euo pipefail
+
+ORDERS=${1:-5000}
+CONCURRENCY=${2:-64}
+TENANT=${3:-1}
+URL=${4:-http://localhost:8080}
+COOKIES=$(mktemp)
+trap 'rm -f "$COOKIES"' EXIT
+
+curl -s -c "$COOKIES" -H 'Content-Type: application/json' \
+	-d "{\"tenantId\": $TENANT, \"username\": \"benchmark\"}" "$URL/rls/login" > /dev/null
+
+create_order() {
+	curl -s -o /dev/null -w '%{http_code}\n' -b "$COOKIES" -H 'Content-Type: application/json' \
+		-d "{\"orderNumber\": \"BENCH-$1\", \"tenantId\": $TENANT, \"orderDate\": \"2025-06-01\", \"orderStatus\": \"PENDING\", \"customername\": \"Benchmark\"}" \
+		"$URL/rls/orders"
+}
+export -f create_order
+export COOKIES TENANT URL
+
+START=$(date +%s.%N)
+RESULTS=$(seq 1 "$ORDERS" | xargs -P "$CONCURRENCY" -I{} bash -c 'create_order {}')
+END=$(date +%s.%N)
+
+ELAPSED=$(awk "BEGIN { print $END - $START }")
+CREATED=$(echo "$RESULTS" | grep -c '^201$' || true)
+echo "orders: $ORDERS, concurrency: $CONCURRENCY, created: $CREATED"
+echo "elapsed: ${ELAPSED}s, throughput: $(awk "BEGIN { printf \"%.1f\", $ORDERS / $ELAPSED }") orders/s"
+echo "Remove the benchmark orders with: POST $URL/rls/orders/bulk/delete {\"customername\": \"Benchmark\"}"
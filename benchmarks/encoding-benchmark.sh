@@ -0,0 +1,50 @@
+#!/usr/bin/env bash
+# Compares bytes on the wire, response time and server CPU of GET /rls/orders per encoding.
+#
+# Prerequisites: running instance, a tenant with about 10k orders
+# (e.g. benchmarks/create-throughput-benchmark.sh 10000 64 1).
+# Usage: benchmarks/encoding-benchmark.sh [tenantId] [runs] [url] [server pid]
+# The server pid is optional, with it the CPU time of the server process is reported as well.
+
+set -euo pipefail
+
+TENANT=${1:-1}
+RUNS=${2:-20}
+URL=${3:-http://localhost:8080}
+PID=${4:-}
+COOKIES=$(mktemp)
+trap 'rm -f "$COOKIES"' EXIT
+
+curl -s -c "$COOKIES" -H 'Content-Type: application/json' \
+	-d "{\"tenantId\": $TENANT, \"username\": \"benchmark\"}" "$URL/rls/login" > /dev/null
+
+# CPU time (user + system) of the server process in clock ticks
+cpu_ticks() {
+	if [[ -n $PID ]]; then
+		awk '{ print $14 + $15 }' "/proc/$PID/stat"
+	else
+		echo 0
+	fi
+}
+
+run() {
+	local accept=$1
+	local encoding=$2
+	local bytes=0 total=0
+	local start_cpu
+	start_cpu=$(cpu_ticks)
+	for ((i = 1; i <= RUNS; i++)); do
+		read -r size time < <(curl -s -o /dev/null -b "$COOKIES" -H "Accept: $accept" \
+			${encoding:+-H "Accept-Encoding: $encoding"} -w '%{size_download} %{time_total}\n' "$URL/rls/orders")
+		bytes=$size
+		total=$(echo "$total + $time" | bc)
+	done
+	local cpu=$(( $(cpu_ticks) - start_cpu ))
+	printf '%-30s %-6s %10s bytes %8.4f s/request %6s cpu ticks\n' "$accept" "${encoding:-none}" "$bytes" \
+		"$(echo "scale=4; $total / $RUNS" | bc)" "$([[ -n $PID ]] && echo "$cpu" || echo n/a)"
+}
+
+for accept in application/json application/cbor application/x-jackson-smile application/avro; do
+	run "$accept" ""
+	run "$accept" "gzip"
+done
@@ -0,0 +1,19 @@
+-- Checks that the RLS tenant filter is used as index condition on idx_orders_tenant_id.
+-- Run as the application user, RLS does not apply to superusers or roles with BYPASSRLS:
+-- psql -U rls -d postgres -f benchmarks/explain-tenant-filter.sql
+
+SET app.tenant_id = '1';
+
+-- The demo table is tiny, without this the planner prefers a sequential scan anyway
+SET enable_seqscan = off;
+
+EXPLAIN (COSTS OFF) SELECT * FROM orders;
+-- Expected plan:
+--   Index Scan using idx_orders_tenant_id on orders
+--     Index Cond: (tenant_id = (NULLIF(current_setting('app.tenant_id'::text, true), ''::text))::bigint)
+-- With the former plpgsql predicate the plan shows a Filter: tenant_access_predicate(tenant_id) instead.
+
+EXPLAIN (COSTS OFF) SELECT * FROM orders WHERE order_status = 'PENDING';
+
+RESET enable_seqscan;
+RESET app.tenant_id;
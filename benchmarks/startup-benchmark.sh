@@ -0,0 +1,55 @@
+#!/usr/bin/env bash
+# Compares cold start times of the plain jar against the AOT + CDS build.
+#
+# Prerequisites: database running, 'mvn -Pfast-startup package' executed.
+# Usage: benchmarks/startup-benchmark.sh [runs]
+
+set -euo pipefail
+
+RUNS=${1:-5}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+JAR=rowlevelsecurity-1.0.0-SNAPSHOT.jar
+APP_DIR="$ROOT/target/application"
+PROFILES=postgres,production
+
+# Starts the application until the context is refreshed and the runners are done,
+# then prints the "Started ... in X seconds" value reported by Spring Boot.
+measure() {
+	local dir=$1
+	shift
+	local log
+	log=$(mktemp)
+	(cd "$dir" && exec java "$@" -jar "$JAR" \
+		--spring.profiles.active=$PROFILES \
+		--server.port=0) > "$log" 2>&1 &
+	local pid=$!
+	local line=""
+	until line=$(grep -Eo 'Started RlsRestServiceApplication in [0-9.]+ seconds' "$log"); do
+		if ! kill -0 "$pid" 2>/dev/null; then
+			echo "application exited before startup completed, see $log" >&2
+			return 1
+		fi
+		sleep 0.2
+	done
+	kill "$pid"
+	wait "$pid" 2>/dev/null || true
+	rm -f "$log"
+	echo "$line" | grep -Eo '[0-9.]+ seconds' | cut -d' ' -f1
+}
+
+run_variant() {
+	local name=$1
+	shift
+	local total=0
+	for ((i = 1; i <= RUNS; i++)); do
+		local t
+		t=$(measure "$@")
+		total=$(echo "$total + $t" | bc)
+		echo "$name run $i: ${t}s"
+	done
+	echo "$name average: $(echo "scale=3; $total / $RUNS" | bc)s"
+}
+
+run_variant "plain" "$ROOT/target"
+run_variant "extracted" "$APP_DIR"
+run_variant "aot+cds" "$APP_DIR" -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true
@@ -20,6 +20,9 @@ public class RlsRestServiceApplication {
 			log.info("Starting RLS REST Service Application...");
 			SpringApplication.run(RlsRestServiceApplication.class, args);
 			log.info("RLS REST Service Application started successfully");
+		} catch (SpringApplication.AbandonedRunException e) {
+			// AOT processing stops the run after the context is prepared, it must see this exception
+			throw e;
 		} catch (Throwable e) {
 			log.error("Failed to start RLS REST Service Application", e);
 			e.printStackTrace();
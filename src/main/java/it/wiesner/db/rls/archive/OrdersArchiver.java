@@ -0,0 +1,98 @@
+package it.wiesner.db.rls.archive;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import it.wiesner.db.rls.batch.KeysetChunks;
+import it.wiesner.db.rls.datamodel.OrdersRepository;
+import it.wiesner.db.rls.metrics.TenantLoadSketch;
+import it.wiesner.db.rls.session.RlsSessionHolder;
+
+/**
+ * Background job moving old COMPLETED/CANCELLED orders from orders to orders_archive, so the hot
+ * table and its indexes only hold the recent working set. The job runs per tenant with the normal
+ * tenant context (no RLS bypass), in small batches with a pause in between to keep locks short
+ * and leave room for production traffic.
+ * RLS hides the other tenants, so the tenants to archive are configured. Recently active tenants
+ * missing from the configuration are logged.
+ */
+@Component
+@ConditionalOnProperty(name = "app.archive.enabled", havingValue = "true")
+public class OrdersArchiver {
+
+	private static final Logger log = LoggerFactory.getLogger(OrdersArchiver.class);
+
+	private final OrdersRepository ordersRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final TenantLoadSketch tenantLoadSketch;
+	private final List<Long> tenantIds;
+	private final List<String> statuses;
+	private final int olderThanDays;
+	private final int batchSize;
+	private final Duration pause;
+
+	public OrdersArchiver(OrdersRepository ordersRepository, TransactionTemplate transactionTemplate,
+			TenantLoadSketch tenantLoadSketch,
+			@Value("${app.archive.tenant-ids:}") List<Long> tenantIds,
+			@Value("${app.archive.statuses:COMPLETED,CANCELLED}") List<String> statuses,
+			@Value("${app.archive.older-than-days:365}") int olderThanDays,
+			@Value("${app.archive.batch-size:500}") int batchSize,
+			@Value("${app.archive.pause-millis:200}") long pauseMillis) {
+		this.ordersRepository = ordersRepository;
+		this.transactionTemplate = transactionTemplate;
+		this.tenantLoadSketch = tenantLoadSketch;
+		this.tenantIds = tenantIds;
+		this.statuses = statuses;
+		this.olderThanDays = olderThanDays;
+		this.batchSize = batchSize;
+		this.pause = Duration.ofMillis(pauseMillis);
+	}
+
+	@Scheduled(fixedDelayString = "${app.archive.interval:PT1H}", initialDelayString = "${app.archive.initial-delay:PT5M}")
+	public void archive() throws InterruptedException {
+		LocalDate beforeDate = LocalDate.now().minusDays(olderThanDays);
+		log.info("Archiving {} orders before {} for {} tenants", statuses, beforeDate, tenantIds.size());
+		for (Long tenantId : tenantIds) {
+			try {
+				int archived = archiveTenant(tenantId, beforeDate);
+				log.info("Archived {} orders for tenant: {}", archived, tenantId);
+			} catch (InterruptedException e) {
+				throw e;
+			} catch (Exception e) {
+				log.error("Error archiving orders for tenant: {}", tenantId, e);
+			}
+		}
+		Set<Long> unconfigured = new TreeSet<>(tenantLoadSketch.getRecentTenants());
+		unconfigured.removeAll(tenantIds);
+		if (!unconfigured.isEmpty()) {
+			log.warn("Tenants active within the last {} are not in app.archive.tenant-ids and are not archived: {}",
+					tenantLoadSketch.getWindow(), unconfigured);
+		}
+	}
+
+	private int archiveTenant(Long tenantId, LocalDate beforeDate) throws InterruptedException {
+		RlsSessionHolder.setRlsSession(tenantId);
+		try {
+			// Copy and delete in one transaction, an order is always in exactly one table
+			return KeysetChunks.forEachChunk(transactionTemplate, batchSize,
+					(afterId, page) -> ordersRepository.findArchivableIds(afterId, statuses, beforeDate, page),
+					ids -> {
+						ordersRepository.copyToArchive(ids);
+						return ordersRepository.deleteByIds(ids);
+					}, pause);
+		} finally {
+			RlsSessionHolder.clear();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package it.wiesner.db.rls.batch;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Walks the ids of a filter by ascending id in chunks and runs an operation per chunk, each chunk
+ * in its own transaction to keep the locks short. The next chunk continues after the last id of
+ * the previous one (keyset), so rows changed by the operation that still match the filter are
+ * never read twice, and the cost per chunk does not grow with the number of rows already done.
+ */
+public final class KeysetChunks {
+
+	/**
+	 * Finds the ids after afterId in ascending order, at most one page.
+	 */
+	@FunctionalInterface
+	public interface IdQuery {
+		List<Long> findIdsAfter(Long afterId, Pageable page);
+	}
+
+	private KeysetChunks() {
+	}
+
+	/**
+	 * @param transactionTemplate Runs the query and the operation of each chunk
+	 * @param chunkSize The maximum number of ids per chunk
+	 * @param query The ids of the next chunk
+	 * @param operation Processes the ids of a chunk and returns the number of affected rows
+	 * @param pause The pause between two chunks, zero for none
+	 * @return the number of affected rows of all chunks
+	 */
+	public static int forEachChunk(TransactionTemplate transactionTemplate, int chunkSize, IdQuery query,
+			ToIntFunction<List<Long>> operation, Duration pause) throws InterruptedException {
+		int size = Math.max(1, chunkSize);
+		AtomicInteger affected = new AtomicInteger();
+		Long afterId = Long.MIN_VALUE;
+		while (true) {
+			final Long lastId = afterId;
+			List<Long> ids = transactionTemplate.execute(tx -> {
+				List<Long> chunk = query.findIdsAfter(lastId, PageRequest.of(0, size));
+				if (!chunk.isEmpty()) {
+					affected.addAndGet(operation.applyAsInt(chunk));
+				}
+				return chunk;
+			});
+			if (ids.size() < size) {
+				return affected.get();
+			}
+			afterId = ids.get(ids.size() - 1);
+			if (!pause.isZero()) {
+				Thread.sleep(pause.toMillis());
+			}
+		}
+	}
+}
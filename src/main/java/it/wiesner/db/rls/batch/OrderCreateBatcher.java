@@ -0,0 +1,181 @@
+package it.wiesner.db.rls.batch;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import it.wiesner.db.rls.datamodel.Orders;
+import it.wiesner.db.rls.datamodel.OrdersRepository;
+import it.wiesner.db.rls.session.RlsSessionHolder;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Group commit for single order creates. Concurrent creates of the same tenant are collected
+ * for at most maxWait or maxBatchSize orders and written in one transaction, so the batch pays
+ * for one connection checkout, one tenant context switch and one commit. Hibernate sends the
+ * inserts as a JDBC batch (hibernate.jdbc.batch_size).
+ */
+@Component
+@ConditionalOnProperty(name = "app.orders.create-batching.enabled", havingValue = "true")
+public class OrderCreateBatcher {
+
+	private static final Logger log = LoggerFactory.getLogger(OrderCreateBatcher.class);
+
+	private final OrdersRepository ordersRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final int maxBatchSize;
+	private final Duration maxWait;
+	private final Duration submitTimeout;
+
+	private final Map<Long, PendingBatch> openBatches = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService timer;
+	private final ExecutorService writers;
+
+	public OrderCreateBatcher(OrdersRepository ordersRepository, TransactionTemplate transactionTemplate,
+			@Value("${app.orders.create-batching.max-batch-size:50}") int maxBatchSize,
+			@Value("${app.orders.create-batching.max-wait:5ms}") Duration maxWait,
+			@Value("${app.orders.create-batching.writer-threads:4}") int writerThreads,
+			@Value("${app.orders.create-batching.submit-timeout:10s}") Duration submitTimeout) {
+		this.ordersRepository = ordersRepository;
+		this.transactionTemplate = transactionTemplate;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.maxWait = maxWait;
+		this.submitTimeout = submitTimeout;
+		this.timer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("order-batch-timer-"));
+		this.writers = Executors.newFixedThreadPool(writerThreads, new CustomizableThreadFactory("order-batch-writer-"));
+		log.info("Order create batching enabled - maxBatchSize: {}, maxWait: {}, writerThreads: {}",
+				this.maxBatchSize, maxWait, writerThreads);
+	}
+
+	/**
+	 * Adds the order to the open batch of the tenant.
+	 * @param tenantId The tenant ID of the calling session
+	 * @param order The order to create
+	 * @return the saved order, or the error of this order only
+	 */
+	public CompletableFuture<Orders> submit(Long tenantId, Orders order) {
+		PendingCreate pending = new PendingCreate(order);
+		openBatches.compute(tenantId, (id, batch) -> {
+			if (batch == null) {
+				batch = new PendingBatch(id);
+				PendingBatch created = batch;
+				batch.timeout = timer.schedule(() -> flushOnTimeout(created), maxWait.toNanos(), TimeUnit.NANOSECONDS);
+			}
+			batch.creates.add(pending);
+			if (batch.creates.size() >= maxBatchSize) {
+				batch.timeout.cancel(false);
+				dispatch(batch);
+				return null;
+			}
+			return batch;
+		});
+		return pending.future;
+	}
+
+	/**
+	 * @return how long a caller waits for the result of {@link #submit(Long, Orders)}
+	 */
+	public Duration getSubmitTimeout() {
+		return submitTimeout;
+	}
+
+	private void flushOnTimeout(PendingBatch batch) {
+		// Only flush if the batch was not already dispatched because it was full
+		if (openBatches.remove(batch.tenantId, batch)) {
+			dispatch(batch);
+		}
+	}
+
+	private void dispatch(PendingBatch batch) {
+		writers.execute(() -> write(batch));
+	}
+
+	private void write(PendingBatch batch) {
+		// Writer threads are pooled, never rely on an inherited session
+		RlsSessionHolder.setRlsSession(batch.tenantId);
+		try {
+			List<Orders> saved = transactionTemplate.execute(tx -> {
+				List<Orders> result = new ArrayList<>(batch.creates.size());
+				for (PendingCreate pending : batch.creates) {
+					result.add(ordersRepository.save(pending.order));
+				}
+				return result;
+			});
+			for (int i = 0; i < batch.creates.size(); i++) {
+				batch.creates.get(i).future.complete(saved.get(i));
+			}
+			log.debug("Wrote batch of {} orders for tenant: {}", batch.creates.size(), batch.tenantId);
+		} catch (Exception e) {
+			log.warn("Batch of {} orders failed for tenant: {}, retrying orders one by one",
+					batch.creates.size(), batch.tenantId, e);
+			writeIndividually(batch);
+		} finally {
+			RlsSessionHolder.clear();
+		}
+	}
+
+	// One invalid order must not fail the other callers of the batch
+	private void writeIndividually(PendingBatch batch) {
+		for (PendingCreate pending : batch.creates) {
+			try {
+				// The failed persist already assigned a generated ID, save() would turn that into a merge
+				pending.order.setOrderId(pending.requestedId);
+				pending.future.complete(transactionTemplate.execute(tx -> ordersRepository.save(pending.order)));
+			} catch (Exception e) {
+				pending.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		timer.shutdownNow();
+		for (Long tenantId : openBatches.keySet()) {
+			PendingBatch batch = openBatches.remove(tenantId);
+			if (batch != null) {
+				dispatch(batch);
+			}
+		}
+		writers.shutdown();
+		if (!writers.awaitTermination(10, TimeUnit.SECONDS)) {
+			log.warn("Order batch writers did not finish within 10 seconds");
+		}
+	}
+
+	private static class PendingBatch {
+		private final Long tenantId;
+		private final List<PendingCreate> creates = new ArrayList<>();
+		private ScheduledFuture<?> timeout;
+
+		PendingBatch(Long tenantId) {
+			this.tenantId = tenantId;
+		}
+	}
+
+	private static class PendingCreate {
+		private final Orders order;
+		private final Long requestedId;
+		private final CompletableFuture<Orders> future = new CompletableFuture<>();
+
+		PendingCreate(Orders order) {
+			this.order = order;
+			this.requestedId = order.getOrderId();
+		}
+	}
+}
@@ -8,6 +8,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -18,11 +19,13 @@ import it.wiesner.db.rls.datasource.TenantAwareDataSource;
 import it.wiesner.db.rls.dialect.DatabaseDialect;
 import it.wiesner.db.rls.dialect.MssqlDialect;
 import it.wiesner.db.rls.dialect.PostgresDialect;
+import it.wiesner.db.rls.metrics.TenantLoadSketch;
 
 /**
  * Configuration class for setting up the TenantAwareDataSource with Row Level Security support.
  */
 @Configuration
+@EnableConfigurationProperties(TenantLimitsProperties.class)
 public class DataSourceConfiguration {
 
     private static final Logger log = LoggerFactory.getLogger(DataSourceConfiguration.class);
@@ -66,10 +69,21 @@ public class DataSourceConfiguration {
     @Bean
     @Primary
     public DataSource dataSource(@Qualifier("actualDataSource") DataSource actualDataSource, 
-                                  DatabaseDialect databaseDialect) {
-        log.info("Creating TenantAwareDataSource with {} dialect", databaseDialect.getClass().getSimpleName());
+                                  DatabaseDialect databaseDialect,
+                                  TenantLimitsProperties tenantLimits,
+                                  TenantLoadSketch tenantLoadSketch) {
+        log.info("Creating TenantAwareDataSource with {} dialect, tenant limits enabled: {}",
+                databaseDialect.getClass().getSimpleName(), tenantLimits.isEnabled());
         
-        TenantAwareDataSource tenantAwareDataSource = new TenantAwareDataSource(actualDataSource, databaseDialect);
+        if (tenantLimits.isEnabled() && !databaseDialect.supportsStatementTimeout()
+                && tenantLimits.getTiers().values().stream().anyMatch(tier -> tier.getStatementTimeout() != null)) {
+            log.warn("{} has no session level statement timeout, statement-timeout is applied client side "
+                    + "as JDBC query timeout in whole seconds", databaseDialect.getClass().getSimpleName());
+        }
+
+        TenantAwareDataSource tenantAwareDataSource = new TenantAwareDataSource(actualDataSource, databaseDialect,
+                tenantLimits::resolve);
+        tenantAwareDataSource.setTenantLoadSketch(tenantLoadSketch);
         
         log.info("TenantAwareDataSource successfully configured and ready for use");
         return tenantAwareDataSource;
@@ -0,0 +1,73 @@
+package it.wiesner.db.rls.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.lang.Nullable;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.avro.AvroMapper;
+import com.fasterxml.jackson.dataformat.avro.AvroSchema;
+
+import it.wiesner.db.rls.datamodel.Orders;
+
+/**
+ * Writes order lists as Avro binary (application/avro) using the schema in avro/orders.avsc.
+ * Field names are not repeated per order, which makes it the most compact encoding.
+ * Write-only, order lists are never read in this format.
+ */
+public class OrdersAvroHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public static final MediaType APPLICATION_AVRO = new MediaType("application", "avro");
+
+    private final AvroSchema schema;
+
+    public OrdersAvroHttpMessageConverter() {
+        super(new AvroMapper(), APPLICATION_AVRO);
+        try (InputStream in = new ClassPathResource("avro/orders.avsc").getInputStream()) {
+            this.schema = ((AvroMapper) getObjectMapper()).schemaFrom(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load avro/orders.avsc", e);
+        }
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    // Only List<Orders> matches the schema
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        if (type == null) {
+            return false;
+        }
+        ResolvableType resolved = ResolvableType.forType(type);
+        return List.class.isAssignableFrom(resolved.toClass())
+                && resolved.getGeneric(0).toClass() == Orders.class
+                && canWrite(mediaType);
+    }
+
+    @Override
+    protected ObjectWriter customizeWriter(ObjectWriter writer, @Nullable JavaType javaType, @Nullable MediaType contentType) {
+        return writer.with(schema);
+    }
+}
@@ -0,0 +1,118 @@
+package it.wiesner.db.rls.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import it.wiesner.db.rls.dialect.DatabaseDialect;
+import it.wiesner.db.rls.dialect.TenantScopedTable;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.EntityType;
+
+/**
+ * Creates the Row Level Security policies from the application on startup. Every JPA entity
+ * with a tenant attribute is tenant-scoped, additional tables without an entity can be configured.
+ * The DDL comes from the DatabaseDialect, so the predicates stay inlinable on every database.
+ * Requires a database user that owns the tables. On PostgreSQL the policies are forced, so they
+ * apply to the owner too, but never to superusers or roles with BYPASSRLS.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "app.rls.manage-policies", havingValue = "true")
+public class RlsPolicyInstaller implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(RlsPolicyInstaller.class);
+
+    private final DataSource actualDataSource;
+    private final DatabaseDialect databaseDialect;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Value("${app.rls.tenant-attribute:tenantId}")
+    private String tenantAttribute;
+
+    @Value("${app.rls.tenant-column:tenant_id}")
+    private String tenantColumn;
+
+    @Value("${app.rls.additional-tables:}")
+    private List<String> additionalTables;
+
+    public RlsPolicyInstaller(@Qualifier("actualDataSource") DataSource actualDataSource,
+                              DatabaseDialect databaseDialect,
+                              EntityManagerFactory entityManagerFactory) {
+        this.actualDataSource = actualDataSource;
+        this.databaseDialect = databaseDialect;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws SQLException {
+        installPolicies(findTenantScopedTables());
+    }
+
+    /**
+     * Runs the generated DDL in one transaction, so other sessions see either the old or the
+     * new policies and never a table without one.
+     */
+    void installPolicies(List<TenantScopedTable> tables) throws SQLException {
+        log.info("Installing Row Level Security policies for tables: {}", tables);
+
+        // No tenant context needed for DDL, bypass the TenantAwareDataSource
+        try (Connection connection = actualDataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement sql = connection.createStatement()) {
+                databaseDialect.checkExistingTenantPolicy(connection);
+                for (String ddl : databaseDialect.createTenantPolicyDdl(tables)) {
+                    log.debug("Executing RLS DDL: {}", ddl);
+                    sql.execute(ddl);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    List<TenantScopedTable> findTenantScopedTables() {
+        List<TenantScopedTable> tables = new ArrayList<>();
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            boolean tenantScoped = entity.getAttributes().stream()
+                    .anyMatch(attribute -> attribute.getName().equals(tenantAttribute));
+            if (!tenantScoped) {
+                continue;
+            }
+            EntityPersister persister = sessionFactory.getMappingMetamodel().getEntityDescriptor(entity.getJavaType());
+            if (persister instanceof AbstractEntityPersister mapped) {
+                tables.add(new TenantScopedTable(mapped.getTableName(), mapped.getPropertyColumnNames(tenantAttribute)[0]));
+            }
+        }
+        for (String table : additionalTables) {
+            if (!table.isBlank()) {
+                tables.add(new TenantScopedTable(table.trim(), tenantColumn));
+            }
+        }
+        return tables;
+    }
+}
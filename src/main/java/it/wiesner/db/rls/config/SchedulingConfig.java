@@ -0,0 +1,14 @@
+package it.wiesner.db.rls.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Scheduled tasks, only the OrdersArchiver has one, so the scheduler only runs with the archive enabled.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "app.archive.enabled", havingValue = "true")
+public class SchedulingConfig {
+}
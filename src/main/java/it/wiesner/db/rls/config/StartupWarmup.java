@@ -0,0 +1,86 @@
+package it.wiesner.db.rls.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import it.wiesner.db.rls.datamodel.OrdersRepository;
+import it.wiesner.db.rls.session.RlsSessionHolder;
+
+/**
+ * Warms up the connection pool and the tenant context path before the application accepts traffic.
+ * Spring Boot only reports the readiness state ACCEPTING_TRAFFIC after all ApplicationRunners have
+ * completed, so the readiness probe stays DOWN until the warm-up is done.
+ */
+@Component
+@ConditionalOnProperty(name = "app.startup.warmup.enabled", havingValue = "true")
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private final DataSource actualDataSource;
+    private final DataSource dataSource;
+    private final OrdersRepository ordersRepository;
+
+    @Value("${app.startup.warmup.tenant-id:0}")
+    private Long warmupTenantId;
+
+    public StartupWarmup(@Qualifier("actualDataSource") DataSource actualDataSource,
+                         @Qualifier("dataSource") DataSource dataSource,
+                         OrdersRepository ordersRepository) {
+        this.actualDataSource = actualDataSource;
+        this.dataSource = dataSource;
+        this.ordersRepository = ordersRepository;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws SQLException {
+        long start = System.currentTimeMillis();
+        int connections = 1;
+        if (actualDataSource instanceof HikariDataSource hikari) {
+            connections = Math.max(1, hikari.getMinimumIdle());
+        }
+
+        // Use a tenant that owns no rows, RLS keeps the warm-up queries empty
+        RlsSessionHolder.setRlsSession(warmupTenantId);
+        try {
+            openConnections(connections);
+            long visible = ordersRepository.count();
+            log.info("Startup warm-up finished in {} ms - {} pooled connections, {} orders visible for warm-up tenant {}",
+                    System.currentTimeMillis() - start, connections, visible, warmupTenantId);
+        } finally {
+            RlsSessionHolder.clear();
+        }
+    }
+
+    /**
+     * Holds the connections at the same time so the pool has to open them physically,
+     * each one passes through setTenantContext and clearTenantContext once.
+     */
+    private void openConnections(int count) throws SQLException {
+        List<Connection> held = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                held.add(dataSource.getConnection());
+            }
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package it.wiesner.db.rls.config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import it.wiesner.db.rls.dialect.TenantLimits;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Per-tenant resource limits (app.tenant-limits). Every tenant belongs to a tier,
+ * tenants without an explicit assignment use the default tier.
+ */
+@ConfigurationProperties("app.tenant-limits")
+public class TenantLimitsProperties {
+
+    private boolean enabled;
+    private String defaultTier = "standard";
+    private Map<String, TenantLimits> tiers = new HashMap<>();
+    private Map<Long, String> tenants = new HashMap<>();
+
+    /**
+     * Resolve the limits of a tenant.
+     * @param tenantId The tenant ID
+     * @return the limits of the tenant's tier, or null if limits are disabled
+     */
+    public TenantLimits resolve(Long tenantId) {
+        if (!enabled) {
+            return null;
+        }
+        return tiers.get(tenants.getOrDefault(tenantId, defaultTier));
+    }
+
+    /**
+     * Fails the startup on unknown tier names, a typo must not silently turn the limits off.
+     */
+    @PostConstruct
+    void validate() {
+        if (!enabled) {
+            return;
+        }
+        Set<String> unknownTiers = new TreeSet<>();
+        if (!tiers.containsKey(defaultTier)) {
+            unknownTiers.add(defaultTier);
+        }
+        for (String tier : tenants.values()) {
+            if (!tiers.containsKey(tier)) {
+                unknownTiers.add(tier);
+            }
+        }
+        if (!unknownTiers.isEmpty()) {
+            throw new IllegalStateException("app.tenant-limits references unknown tiers " + unknownTiers
+                    + ", configured tiers: " + tiers.keySet());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDefaultTier() {
+        return defaultTier;
+    }
+
+    public void setDefaultTier(String defaultTier) {
+        this.defaultTier = defaultTier;
+    }
+
+    public Map<String, TenantLimits> getTiers() {
+        return tiers;
+    }
+
+    public void setTiers(Map<String, TenantLimits> tiers) {
+        this.tiers = tiers;
+    }
+
+    public Map<Long, String> getTenants() {
+        return tenants;
+    }
+
+    public void setTenants(Map<Long, String> tenants) {
+        this.tenants = tenants;
+    }
+}
@@ -1,14 +1,18 @@
 package it.wiesner.db.rls.config;
 
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import it.wiesner.db.rls.interceptor.AdminTokenInterceptor;
 import it.wiesner.db.rls.interceptor.RlsSessionInterceptor;
 
 /**
- * Web MVC configuration for registering interceptors.
+ * Web MVC configuration for registering interceptors and message converters.
  */
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
@@ -16,11 +20,28 @@ public class WebMvcConfig implements WebMvcConfigurer {
     @Autowired
     private RlsSessionInterceptor rlsSessionInterceptor;
 
+    @Autowired
+    private AdminTokenInterceptor adminTokenInterceptor;
+
     @SuppressWarnings("null")
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         // Register the RLS session interceptor for all requests
         registry.addInterceptor(rlsSessionInterceptor)
                 .addPathPatterns("/rls/**");  // Apply to all RLS endpoints
+
+        // Cross-tenant endpoints live outside /rls and need the admin token instead of a tenant session
+        registry.addInterceptor(adminTokenInterceptor)
+                .addPathPatterns("/admin/**");
+    }
+
+    /**
+     * CBOR and Smile are registered by Spring MVC itself since the Jackson dataformats are on the
+     * classpath. Avro is added last, so it is only used when the client asks for application/avro
+     * and JSON stays the default for Accept: *&#47;*.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new OrdersAvroHttpMessageConverter());
     }
 }
@@ -1,10 +1,15 @@
 package it.wiesner.db.rls.controller;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToIntFunction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,16 +18,21 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import it.wiesner.db.rls.batch.KeysetChunks;
+import it.wiesner.db.rls.batch.OrderCreateBatcher;
 import it.wiesner.db.rls.datamodel.Orders;
 import it.wiesner.db.rls.datamodel.OrdersRepository;
+import it.wiesner.db.rls.metrics.TenantLoadSketch;
 import it.wiesner.db.rls.session.RlsSessionHolder;
 
 @RestController
@@ -34,6 +44,16 @@ public class OrdersController {
 	@Autowired
 	private OrdersRepository ordersRepository;
 
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private TenantLoadSketch tenantLoadSketch;
+
+	// Only present with app.orders.create-batching.enabled=true
+	@Autowired(required = false)
+	private OrderCreateBatcher orderCreateBatcher;
+
 	public List<Orders> getOrders() throws IOException {
 		List<Orders> orders = new ArrayList<Orders>();
 		Iterator<Orders> iter = ordersRepository.findAll().iterator();
@@ -46,7 +66,8 @@ public class OrdersController {
 
 	@GetMapping("/rls/orders")
 	@Transactional(readOnly = true)
-	public ResponseEntity<List<Orders>> getAllOrders() throws IOException {
+	public ResponseEntity<List<Orders>> getAllOrders(
+			@RequestParam(defaultValue = "false") boolean includeHistory) throws IOException {
 		// Session wurde bereits beim Login gesetzt
 		RlsSessionHolder.RlsSession session = RlsSessionHolder.getRlsSession();
 		if (session == null) {
@@ -54,14 +75,16 @@ public class OrdersController {
 			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
 		}
 		
-		log.info("Fetching orders for tenant: {}", session.tenantId);
-		List<Orders> orders = getOrders();
+		log.info("Fetching orders for tenant: {}, includeHistory: {}", session.tenantId, includeHistory);
+		// The archive is only read on request, the hot orders table stays small
+		List<Orders> orders = includeHistory ? ordersRepository.findAllIncludingArchive() : getOrders();
 		log.info("Retrieved {} orders", orders.size());
+		tenantLoadSketch.record(session.tenantId, TenantLoadSketch.Metric.ROWS_RETURNED, orders.size());
 		return ResponseEntity.ok(orders);
 	}
 
+	// Not @Transactional: the save runs in its own transaction, or in the group commit of the batcher
 	@PostMapping("/rls/orders")
-	@Transactional
 	public ResponseEntity<Orders> createOrder(@RequestBody Orders order) {
 		// Session wurde bereits beim Login gesetzt
 		RlsSessionHolder.RlsSession session = RlsSessionHolder.getRlsSession();
@@ -79,9 +102,20 @@ public class OrdersController {
 		
 		try {
 			log.info("Creating order for tenant: {}", order.getTenantId());
-			Orders savedOrder = ordersRepository.save(order);
+			Orders savedOrder = orderCreateBatcher != null
+					? orderCreateBatcher.submit(session.tenantId, order)
+							.get(orderCreateBatcher.getSubmitTimeout().toMillis(), TimeUnit.MILLISECONDS)
+					: ordersRepository.save(order);
 			log.info("Successfully created order with ID: {} for tenant: {}", savedOrder.getOrderId(), savedOrder.getTenantId());
 			return ResponseEntity.status(HttpStatus.CREATED).body(savedOrder);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("Interrupted while waiting for the order batch of tenant: {}", order.getTenantId());
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		} catch (TimeoutException e) {
+			// The batch may still be written, the caller has to check before retrying
+			log.warn("Timed out waiting for the order batch of tenant: {}", order.getTenantId());
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
 		} catch (Exception e) {
 			log.error("Error creating order for tenant: {}", order.getTenantId(), e);
 			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -152,4 +186,172 @@ public class OrdersController {
 		}
 	}
 
+	@PostMapping("/rls/orders/bulk/status")
+	public ResponseEntity<BulkOrderResponse> updateOrderStatusBulk(@RequestBody BulkOrderRequest request) {
+		// Session wurde bereits beim Login gesetzt
+		RlsSessionHolder.RlsSession session = RlsSessionHolder.getRlsSession();
+		if (session == null) {
+			log.warn("No RLS session found - user not logged in");
+			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+		}
+
+		if (request.getNewStatus() == null || request.getNewStatus().isBlank()) {
+			log.warn("Bulk status update without new status for tenant: {}", session.tenantId);
+			return ResponseEntity.badRequest().build();
+		}
+
+		try {
+			log.info("Bulk status update to {} for tenant: {}, filter: {}", request.getNewStatus(), session.tenantId, request);
+			int affected;
+			if (request.getChunkSize() == null) {
+				// Single set-based UPDATE, RLS restricts it to the rows of this tenant
+				affected = transactionTemplate.execute(tx -> ordersRepository.updateStatusByFilter(request.getNewStatus(),
+						request.getStatus(), request.getFromDate(), request.getBeforeDate(), request.getCustomername()));
+			} else {
+				affected = runInChunks(request, ids -> ordersRepository.updateStatusByIds(request.getNewStatus(), ids));
+			}
+			log.info("Bulk status update changed {} orders for tenant: {}", affected, session.tenantId);
+			return ResponseEntity.ok(new BulkOrderResponse(affected));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("Interrupted during bulk operation for tenant: {}", session.tenantId);
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		} catch (Exception e) {
+			log.error("Error in bulk status update for tenant: {}", session.tenantId, e);
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+		}
+	}
+
+	@PostMapping("/rls/orders/bulk/delete")
+	public ResponseEntity<BulkOrderResponse> deleteOrdersBulk(@RequestBody BulkOrderRequest request) {
+		// Session wurde bereits beim Login gesetzt
+		RlsSessionHolder.RlsSession session = RlsSessionHolder.getRlsSession();
+		if (session == null) {
+			log.warn("No RLS session found - user not logged in");
+			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+		}
+
+		// Refuse to purge all orders of a tenant by accident
+		if (!request.hasFilter()) {
+			log.warn("Bulk delete without filter rejected for tenant: {}", session.tenantId);
+			return ResponseEntity.badRequest().build();
+		}
+
+		try {
+			log.info("Bulk delete for tenant: {}, filter: {}", session.tenantId, request);
+			int affected;
+			if (request.getChunkSize() == null) {
+				// Single set-based DELETE, RLS restricts it to the rows of this tenant
+				affected = transactionTemplate.execute(tx -> ordersRepository.deleteByFilter(request.getStatus(),
+						request.getFromDate(), request.getBeforeDate(), request.getCustomername()));
+			} else {
+				affected = runInChunks(request, ids -> ordersRepository.deleteByIds(ids));
+			}
+			log.info("Bulk delete removed {} orders for tenant: {}", affected, session.tenantId);
+			return ResponseEntity.ok(new BulkOrderResponse(affected));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("Interrupted during bulk operation for tenant: {}", session.tenantId);
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		} catch (Exception e) {
+			log.error("Error in bulk delete for tenant: {}", session.tenantId, e);
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+		}
+	}
+
+	/**
+	 * Runs a bulk operation in chunks of at most chunkSize orders, each chunk in its own
+	 * transaction to keep the locks short. Chunks are walked by ascending order id.
+	 */
+	private int runInChunks(BulkOrderRequest request, ToIntFunction<List<Long>> operation) throws InterruptedException {
+		return KeysetChunks.forEachChunk(transactionTemplate, request.getChunkSize(),
+				(afterId, page) -> ordersRepository.findIdsByFilter(afterId, request.getStatus(), request.getFromDate(),
+						request.getBeforeDate(), request.getCustomername(), page),
+				operation, Duration.ZERO);
+	}
+
+	// Inner classes for bulk request/response
+	public static class BulkOrderRequest {
+		private String status;
+		private LocalDate fromDate;
+		private LocalDate beforeDate;
+		private String customername;
+		private String newStatus;
+		private Integer chunkSize;
+
+		public boolean hasFilter() {
+			return status != null || fromDate != null || beforeDate != null || customername != null;
+		}
+
+		@Override
+		public String toString() {
+			return "BulkOrderRequest [status=" + status + ", fromDate=" + fromDate + ", beforeDate=" + beforeDate
+					+ ", customername=" + customername + ", newStatus=" + newStatus + ", chunkSize=" + chunkSize + "]";
+		}
+
+		public String getStatus() {
+			return status;
+		}
+
+		public void setStatus(String status) {
+			this.status = status;
+		}
+
+		public LocalDate getFromDate() {
+			return fromDate;
+		}
+
+		public void setFromDate(LocalDate fromDate) {
+			this.fromDate = fromDate;
+		}
+
+		public LocalDate getBeforeDate() {
+			return beforeDate;
+		}
+
+		public void setBeforeDate(LocalDate beforeDate) {
+			this.beforeDate = beforeDate;
+		}
+
+		public String getCustomername() {
+			return customername;
+		}
+
+		public void setCustomername(String customername) {
+			this.customername = customername;
+		}
+
+		public String getNewStatus() {
+			return newStatus;
+		}
+
+		public void setNewStatus(String newStatus) {
+			this.newStatus = newStatus;
+		}
+
+		public Integer getChunkSize() {
+			return chunkSize;
+		}
+
+		public void setChunkSize(Integer chunkSize) {
+			this.chunkSize = chunkSize;
+		}
+	}
+
+	public static class BulkOrderResponse {
+		private int affected;
+
+		public BulkOrderResponse(int affected) {
+			this.affected = affected;
+		}
+
+		public int getAffected() {
+			return affected;
+		}
+
+		public void setAffected(int affected) {
+			this.affected = affected;
+		}
+	}
+
 }
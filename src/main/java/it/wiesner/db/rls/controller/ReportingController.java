@@ -0,0 +1,84 @@
+package it.wiesner.db.rls.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import it.wiesner.db.rls.datamodel.OrdersRepository;
+import it.wiesner.db.rls.reporting.TenantReportingService;
+
+/**
+ * Fleet-wide reports across tenants. The results are streamed as newline delimited JSON,
+ * one line per tenant in completion order, so a slow tenant does not hold back the others.
+ * The endpoints are outside /rls and guarded by the AdminTokenInterceptor.
+ */
+@RestController
+@ConditionalOnProperty(name = "app.reporting.enabled", havingValue = "true")
+public class ReportingController {
+
+	private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+	Logger log = LoggerFactory.getLogger(ReportingController.class);
+
+	@Autowired
+	private TenantReportingService reportingService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@GetMapping("/admin/reports/orders-per-tenant")
+	public ResponseEntity<StreamingResponseBody> ordersPerTenant(@RequestParam List<Long> tenantIds) {
+		log.info("Orders per tenant report for {} tenants", tenantIds.size());
+		return stream(tenantIds, OrdersRepository::count);
+	}
+
+	@GetMapping("/admin/reports/stale-pending")
+	public ResponseEntity<StreamingResponseBody> stalePendingOrders(@RequestParam List<Long> tenantIds,
+			@RequestParam(defaultValue = "30") int olderThanDays) {
+		LocalDate before = LocalDate.now().minusDays(olderThanDays);
+		log.info("Stale pending orders report before {} for {} tenants", before, tenantIds.size());
+		return stream(tenantIds, repository -> repository.countByOrderStatusAndOrderDateBefore("PENDING", before));
+	}
+
+	private <T> ResponseEntity<StreamingResponseBody> stream(List<Long> tenantIds, Function<OrdersRepository, T> query) {
+		StreamingResponseBody body = out -> {
+			try {
+				reportingService.forEachTenant(tenantIds, query, result -> writeLine(out, result));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				log.warn("Tenant report interrupted");
+			} catch (UncheckedIOException e) {
+				// Usually the client went away, the service has cancelled the remaining tenants
+				log.warn("Tenant report aborted: {}", e.getCause().getMessage());
+				throw e.getCause();
+			}
+		};
+		return ResponseEntity.ok().contentType(NDJSON).body(body);
+	}
+
+	private void writeLine(OutputStream out, Object line) {
+		try {
+			out.write(objectMapper.writeValueAsBytes(line));
+			out.write('\n');
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -2,6 +2,8 @@ package it.wiesner.db.rls.datamodel;
 
 import java.time.LocalDate;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -9,6 +11,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 
 @Entity
+@JsonSerialize(using = OrdersSerializer.class)
 public class Orders {
 	@Id
 	@GeneratedValue(strategy = GenerationType.AUTO)
@@ -1,8 +1,74 @@
 package it.wiesner.db.rls.datamodel;
 
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface OrdersRepository extends CrudRepository<Orders, Long> {
+
+	long countByOrderStatusAndOrderDateBefore(String orderStatus, LocalDate orderDate);
+
+	// Filter used by the bulk operations, a null parameter matches every row.
+	// Rows of other tenants are never affected, RLS restricts the UPDATE/DELETE as well.
+	String BULK_FILTER = "(:status IS NULL OR o.orderStatus = :status)"
+			+ " AND (:fromDate IS NULL OR o.orderDate >= :fromDate)"
+			+ " AND (:beforeDate IS NULL OR o.orderDate < :beforeDate)"
+			+ " AND (:customername IS NULL OR o.customername = :customername)";
+
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("UPDATE Orders o SET o.orderStatus = :newStatus WHERE " + BULK_FILTER)
+	int updateStatusByFilter(@Param("newStatus") String newStatus, @Param("status") String status,
+			@Param("fromDate") LocalDate fromDate, @Param("beforeDate") LocalDate beforeDate,
+			@Param("customername") String customername);
+
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("DELETE FROM Orders o WHERE " + BULK_FILTER)
+	int deleteByFilter(@Param("status") String status, @Param("fromDate") LocalDate fromDate,
+			@Param("beforeDate") LocalDate beforeDate, @Param("customername") String customername);
+
+	/**
+	 * Keyset page of the order ids matching the bulk filter, used to run bulk operations in chunks.
+	 */
+	@Query("SELECT o.orderId FROM Orders o WHERE o.orderId > :afterId AND " + BULK_FILTER + " ORDER BY o.orderId")
+	List<Long> findIdsByFilter(@Param("afterId") Long afterId, @Param("status") String status,
+			@Param("fromDate") LocalDate fromDate, @Param("beforeDate") LocalDate beforeDate,
+			@Param("customername") String customername, Pageable pageable);
+
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("UPDATE Orders o SET o.orderStatus = :newStatus WHERE o.orderId IN :ids")
+	int updateStatusByIds(@Param("newStatus") String newStatus, @Param("ids") List<Long> ids);
+
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("DELETE FROM Orders o WHERE o.orderId IN :ids")
+	int deleteByIds(@Param("ids") List<Long> ids);
+
+	// Hot/cold archive: orders_archive has the same layout and RLS policy as orders
+	String ORDER_COLUMNS = "order_id, order_number, tenant_id, order_date, order_status, customername";
+
+	/**
+	 * All orders including the archived history, only for callers that ask for history.
+	 */
+	@Query(value = "SELECT " + ORDER_COLUMNS + " FROM orders UNION ALL SELECT " + ORDER_COLUMNS + " FROM orders_archive",
+			nativeQuery = true)
+	List<Orders> findAllIncludingArchive();
+
+	/**
+	 * Keyset page of the order ids to archive, each batch continues after the last one.
+	 */
+	@Query("SELECT o.orderId FROM Orders o WHERE o.orderId > :afterId AND o.orderStatus IN :statuses"
+			+ " AND o.orderDate < :beforeDate ORDER BY o.orderId")
+	List<Long> findArchivableIds(@Param("afterId") Long afterId, @Param("statuses") List<String> statuses,
+			@Param("beforeDate") LocalDate beforeDate, Pageable pageable);
+
+	@Modifying
+	@Query(value = "INSERT INTO orders_archive (" + ORDER_COLUMNS + ") SELECT " + ORDER_COLUMNS
+			+ " FROM orders WHERE order_id IN (:ids)", nativeQuery = true)
+	int copyToArchive(@Param("ids") List<Long> ids);
 }
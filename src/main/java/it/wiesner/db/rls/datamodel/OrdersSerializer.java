@@ -0,0 +1,41 @@
+package it.wiesner.db.rls.datamodel;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Streaming serializer for Orders without reflection. Writes the same fields as the default
+ * bean serializer and works for every Jackson format (JSON, CBOR, Smile, Avro).
+ */
+public class OrdersSerializer extends StdSerializer<Orders> {
+
+	private static final long serialVersionUID = 1L;
+
+	public OrdersSerializer() {
+		super(Orders.class);
+	}
+
+	@Override
+	public void serialize(Orders order, JsonGenerator gen, SerializerProvider provider) throws IOException {
+		gen.writeStartObject(order);
+		writeLong(gen, "orderId", order.getOrderId());
+		gen.writeStringField("orderNumber", order.getOrderNumber());
+		writeLong(gen, "tenantId", order.getTenantId());
+		// ISO-8601 like the default LocalDate serialization
+		gen.writeStringField("orderDate", order.getOrderDate() != null ? order.getOrderDate().toString() : null);
+		gen.writeStringField("orderStatus", order.getOrderStatus());
+		gen.writeStringField("customername", order.getCustomername());
+		gen.writeEndObject();
+	}
+
+	private static void writeLong(JsonGenerator gen, String name, Long value) throws IOException {
+		if (value != null) {
+			gen.writeNumberField(name, value.longValue());
+		} else {
+			gen.writeNullField(name);
+		}
+	}
+}
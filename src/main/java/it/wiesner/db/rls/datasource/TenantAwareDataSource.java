@@ -1,10 +1,13 @@
 package it.wiesner.db.rls.datasource;
 
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Function;
 
 import javax.sql.DataSource;
 
@@ -13,7 +16,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.datasource.ConnectionProxy;
 import org.springframework.jdbc.datasource.DelegatingDataSource;
 
+import com.zaxxer.hikari.HikariDataSource;
+
 import it.wiesner.db.rls.dialect.DatabaseDialect;
+import it.wiesner.db.rls.dialect.TenantLimits;
+import it.wiesner.db.rls.metrics.TenantLoadSketch;
 import it.wiesner.db.rls.session.RlsSessionHolder;
 import jakarta.annotation.Nullable;
 
@@ -25,60 +32,139 @@ public class TenantAwareDataSource extends DelegatingDataSource {
 
 	private static final Logger log = LoggerFactory.getLogger(TenantAwareDataSource.class);
 	private final DatabaseDialect databaseDialect;
+	private final Function<Long, TenantLimits> tenantLimits;
+	private TenantLoadSketch tenantLoadSketch;
 
 	public TenantAwareDataSource(DataSource targetDataSource, DatabaseDialect databaseDialect) {
+		this(targetDataSource, databaseDialect, tenantId -> null);
+	}
+
+	/**
+	 * @param tenantLimits Resolves the resource limits applied together with the tenant context, may return null
+	 */
+	public TenantAwareDataSource(DataSource targetDataSource, DatabaseDialect databaseDialect,
+			Function<Long, TenantLimits> tenantLimits) {
 		super(targetDataSource);
 		this.databaseDialect = databaseDialect;
+		this.tenantLimits = tenantLimits;
 		log.info("TenantAwareDataSource initialized with dialect: {}", databaseDialect.getClass().getSimpleName());
 	}
 
+	/**
+	 * @param tenantLoadSketch Receives the connection hold time per tenant, optional
+	 */
+	public void setTenantLoadSketch(TenantLoadSketch tenantLoadSketch) {
+		this.tenantLoadSketch = tenantLoadSketch;
+	}
+
 	@SuppressWarnings("null")
 	@Override
 	public Connection getConnection() throws SQLException {
 		final Connection connection = getTargetDataSource().getConnection();
-		setTenantId(connection);
+		TenantLimits limits = setTenantIdOrDiscard(connection);
 		log.debug("Created new database connection with tenant context");
-		return getTenantAwareConnectionProxy(connection);
+		return getTenantAwareConnectionProxy(connection, limits);
 	}
 
 	@SuppressWarnings("null")
 	@Override
 	public Connection getConnection(String username, String password) throws SQLException {
 		final Connection connection = getTargetDataSource().getConnection(username, password);
-		setTenantId(connection);
+		TenantLimits limits = setTenantIdOrDiscard(connection);
 		log.debug("Created new database connection with credentials and tenant context");
-		return getTenantAwareConnectionProxy(connection);
+		return getTenantAwareConnectionProxy(connection, limits);
 	}
 
-	private void setTenantId(Connection connection) throws SQLException {
+	// Returns the limits applied with the tenant context, they have to be cleared with it
+	private TenantLimits setTenantId(Connection connection) throws SQLException {
 		if (RlsSessionHolder.getRlsSession() != null) {
 			Long tenantId = RlsSessionHolder.getRlsSession().tenantId;
-			log.info("Setting tenant context - TenantId: {}", tenantId);
-			databaseDialect.setTenantContext(connection, tenantId);
+			TenantLimits limits = tenantLimits.apply(tenantId);
+			log.info("Setting tenant context - TenantId: {}, limits: {}", tenantId, limits);
+			databaseDialect.setTenantContext(connection, tenantId, limits);
+			return limits;
 		} else {
 			log.warn("No RLS session found when acquiring connection");
+			return null;
+		}
+	}
+
+	// A connection whose tenant context could not be set may hold part of it, it is not returned to the pool
+	private TenantLimits setTenantIdOrDiscard(Connection connection) throws SQLException {
+		try {
+			return setTenantId(connection);
+		} catch (SQLException | RuntimeException e) {
+			discard(connection);
+			throw e;
 		}
 	}
 
-	private void clearTenantId(Connection connection) throws SQLException {
+	private void discard(Connection connection) {
+		try {
+			if (getTargetDataSource() instanceof HikariDataSource hikari) {
+				hikari.evictConnection(connection);
+			} else {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			log.warn("Could not close discarded connection", e);
+		}
+	}
+
+	private void clearTenantId(Connection connection, TenantLimits limits) throws SQLException {
 		log.info("Clearing tenant context from connection");
-		databaseDialect.clearTenantContext(connection);
+		databaseDialect.clearTenantContext(connection, limits);
+	}
+
+	// A connection whose tenant context and limits cannot be reset must not go back to the pool
+	private void clearTenantIdOrEvict(Connection connection, TenantLimits limits) {
+		try {
+			if (connection.getAutoCommit()) {
+				clearTenantId(connection, limits);
+			} else {
+				// Uncommitted work is discarded as the pool would do on close, e.g. a transaction aborted
+				// by a statement timeout. The reset itself is committed, a rollback by the pool would undo it
+				connection.rollback();
+				clearTenantId(connection, limits);
+				connection.commit();
+			}
+		} catch (SQLException e) {
+			log.warn("Could not clear tenant context, evicting connection from pool", e);
+			if (getTargetDataSource() instanceof HikariDataSource hikari) {
+				hikari.evictConnection(connection);
+			}
+		}
 	}
 
 	// Connection Proxy that intercepts close() to reset the tenant_id
-	protected Connection getTenantAwareConnectionProxy(Connection connection) {
+	protected Connection getTenantAwareConnectionProxy(Connection connection, TenantLimits limits) {
 		return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
 				new Class[] { ConnectionProxy.class },
-				new TenantAwareDataSource.TenantAwareInvocationHandler(connection));
+				new TenantAwareDataSource.TenantAwareInvocationHandler(connection, limits, queryTimeoutSeconds(limits)));
+	}
+
+	// Client side statement timeout for databases without a session level one, 0 for none
+	private int queryTimeoutSeconds(TenantLimits limits) {
+		if (databaseDialect.supportsStatementTimeout() || limits == null || limits.getStatementTimeout() == null) {
+			return 0;
+		}
+		// Statement.setQueryTimeout has seconds precision, round up so the limit is never stricter
+		return (int) Math.max(1, (limits.getStatementTimeout().toMillis() + 999) / 1000);
 	}
 
 	// Connection Proxy invocation handler that intercepts close() to reset the
 	// tenant_id
 	private class TenantAwareInvocationHandler implements InvocationHandler {
 		private final Connection target;
+		private final TenantLimits limits;
+		private final int queryTimeoutSeconds;
+		private final RlsSessionHolder.RlsSession session = RlsSessionHolder.getRlsSession();
+		private final long acquiredAt = System.nanoTime();
 
-		public TenantAwareInvocationHandler(Connection target) {
+		public TenantAwareInvocationHandler(Connection target, TenantLimits limits, int queryTimeoutSeconds) {
 			this.target = target;
+			this.limits = limits;
+			this.queryTimeoutSeconds = queryTimeoutSeconds;
 		}
 
 		@Override
@@ -95,21 +181,43 @@ public class TenantAwareDataSource extends DelegatingDataSource {
 				if (((Class<?>) args[0]).isInstance(proxy)) {
 					return proxy;
 				} else {
-					return method.invoke(target, args);
+					return invokeTarget(method, args);
 				}
 			case "isWrapperFor":
 				if (((Class<?>) args[0]).isInstance(proxy)) {
 					return true;
 				} else {
-					return method.invoke(target, args);
+					return invokeTarget(method, args);
 				}
 			case "getTargetConnection":
 				return target;
 			default:
 				if (method.getName().equals("close")) {
-					clearTenantId(target);
+					clearTenantIdOrEvict(target, limits);
+					recordHoldTime();
+				}
+				Object result = invokeTarget(method, args);
+				if (queryTimeoutSeconds > 0 && result instanceof Statement statement) {
+					// createStatement, prepareStatement and prepareCall
+					statement.setQueryTimeout(queryTimeoutSeconds);
 				}
+				return result;
+			}
+		}
+
+		// Rethrows the SQLException of the target instead of an UndeclaredThrowableException
+		private Object invokeTarget(Method method, Object[] args) throws Throwable {
+			try {
 				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+
+		private void recordHoldTime() {
+			if (tenantLoadSketch != null && session != null) {
+				long heldMicros = (System.nanoTime() - acquiredAt) / 1_000;
+				tenantLoadSketch.record(session.tenantId, TenantLoadSketch.Metric.CONNECTION_HOLD_MICROS, heldMicros);
 			}
 		}
 	}
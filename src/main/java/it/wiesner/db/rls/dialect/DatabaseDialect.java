@@ -2,6 +2,7 @@ package it.wiesner.db.rls.dialect;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * Strategy interface for database-specific session context handling.
@@ -15,13 +16,74 @@ public interface DatabaseDialect {
      * @param tenantId the tenant ID
      * @throws SQLException if the SQL execution fails
      */
-    void setTenantContext(Connection connection, Long tenantId) throws SQLException;
+    default void setTenantContext(Connection connection, Long tenantId) throws SQLException {
+        setTenantContext(connection, tenantId, null);
+    }
+
+    /**
+     * Set the tenant context variables and the resource limits of the tenant in the database
+     * session, in a single round trip.
+     * 
+     * @param connection the database connection
+     * @param tenantId the tenant ID
+     * @param limits the resource limits of the tenant, null for none
+     * @throws SQLException if the SQL execution fails
+     */
+    void setTenantContext(Connection connection, Long tenantId, TenantLimits limits) throws SQLException;
     
     /**
-     * Clear the tenant context variables in the database session.
+     * Clear the tenant context variables and resource limits in the database session.
      * 
      * @param connection the database connection
      * @throws SQLException if the SQL execution fails
      */
     void clearTenantContext(Connection connection) throws SQLException;
+
+    /**
+     * Clear the tenant context variables and the resource limits that were applied with it.
+     * 
+     * @param connection the database connection
+     * @param limits the resource limits applied by setTenantContext, null for none
+     * @throws SQLException if the SQL execution fails
+     */
+    default void clearTenantContext(Connection connection, TenantLimits limits) throws SQLException {
+        clearTenantContext(connection);
+    }
+
+    /**
+     * Whether setTenantContext applies the statement timeout on the server. If not, the
+     * TenantAwareDataSource sets it as query timeout on every statement of the connection.
+     * 
+     * @return true if the database has a session level statement timeout
+     */
+    default boolean supportsStatementTimeout() {
+        return true;
+    }
+
+    /**
+     * Build the tenant filter for a column as plain, inlinable SQL.
+     * The planner can use it as an index condition on the tenant column.
+     * 
+     * @param tenantColumn the column holding the tenant ID
+     * @return the SQL predicate
+     */
+    String tenantPredicate(String tenantColumn);
+
+    /**
+     * Build the DDL that (re)creates the Row Level Security policies for the given tables.
+     * 
+     * @param tables the tenant-scoped tables
+     * @return the statements, to be executed in order
+     */
+    List<String> createTenantPolicyDdl(List<TenantScopedTable> tables);
+
+    /**
+     * Check the policy objects that already exist before the DDL of createTenantPolicyDdl runs,
+     * e.g. to warn about objects the DDL keeps unchanged.
+     * 
+     * @param connection the connection the DDL runs on
+     * @throws SQLException if the SQL execution fails
+     */
+    default void checkExistingTenantPolicy(Connection connection) throws SQLException {
+    }
 }
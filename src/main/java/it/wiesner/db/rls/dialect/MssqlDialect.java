@@ -1,8 +1,12 @@
 package it.wiesner.db.rls.dialect;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,25 +18,169 @@ import org.slf4j.LoggerFactory;
 public class MssqlDialect implements DatabaseDialect {
     
     private static final Logger logger = LoggerFactory.getLogger(MssqlDialect.class);
+    private static final String PREDICATE_FUNCTION = "dbo.TenantAccessPredicate";
+    private static final String SECURITY_POLICY = "dbo.TenantAccessPolicy";
 
+    // Server wide query governor cost limit, restored after a tenant limit was applied
+    private volatile Integer serverQueryGovernorCostLimit;
+
+    /**
+     * Applies LOCK_TIMEOUT and QUERY_GOVERNOR_COST_LIMIT together with the tenant context.
+     * SQL Server has no server side statement timeout and no session level work memory setting,
+     * the query governor rejects queries whose estimated cost exceeds the limit instead.
+     */
     @Override
-    public void setTenantContext(Connection connection, Long tenantId) throws SQLException {
+    public void setTenantContext(Connection connection, Long tenantId, TenantLimits limits) throws SQLException {
         try (Statement sql = connection.createStatement()) {
-            String setTenantId = String.format(
+            StringBuilder setTenantContext = new StringBuilder(String.format(
                 "EXEC sys.sp_set_session_context @key = N'TenantId', @value = %d", 
                 tenantId
-            );
+            ));
+            if (limits != null) {
+                if (limits.getLockTimeout() != null) {
+                    setTenantContext.append(String.format("; SET LOCK_TIMEOUT %d", limits.getLockTimeout().toMillis()));
+                }
+                if (limits.getQueryGovernorCostLimit() != null) {
+                    setTenantContext.append(String.format("; SET QUERY_GOVERNOR_COST_LIMIT %d", limits.getQueryGovernorCostLimit()));
+                }
+            }
             
-            logger.debug("Setting MSSQL tenant context: TenantId={}", tenantId);
-            sql.execute(setTenantId);
+            logger.debug("Setting MSSQL tenant context: TenantId={}, limits={}", tenantId, limits);
+            sql.execute(setTenantContext.toString());
         }
     }
 
     @Override
     public void clearTenantContext(Connection connection) throws SQLException {
+        clearTenantContext(connection, null);
+    }
+
+    /**
+     * SET QUERY_GOVERNOR_COST_LIMIT overrides the server wide limit for the session, so it is
+     * only reset if a tenant limit was applied, and then to the server value, not to 0 (off).
+     */
+    @Override
+    public void clearTenantContext(Connection connection, TenantLimits limits) throws SQLException {
+        StringBuilder clearTenantContext = new StringBuilder(
+            "EXEC sys.sp_set_session_context @key = N'TenantId', @value = -1; SET LOCK_TIMEOUT -1");
+        if (limits != null && limits.getQueryGovernorCostLimit() != null) {
+            clearTenantContext.append(String.format("; SET QUERY_GOVERNOR_COST_LIMIT %d", serverQueryGovernorCostLimit(connection)));
+        }
         try (Statement sql = connection.createStatement()) {
             logger.debug("Clearing MSSQL tenant context");
-            sql.execute("EXEC sys.sp_set_session_context @key = N'TenantId', @value = -1");
+            sql.execute(clearTenantContext.toString());
+        }
+    }
+
+    /**
+     * SQL Server has no session level statement timeout, the TenantAwareDataSource applies it
+     * client side as query timeout on every statement.
+     */
+    @Override
+    public boolean supportsStatementTimeout() {
+        return false;
+    }
+
+    private int serverQueryGovernorCostLimit(Connection connection) throws SQLException {
+        Integer limit = serverQueryGovernorCostLimit;
+        if (limit == null) {
+            try (Statement sql = connection.createStatement();
+                 ResultSet result = sql.executeQuery("SELECT CONVERT(int, value_in_use) FROM sys.configurations "
+                         + "WHERE name = N'query governor cost limit'")) {
+                limit = result.next() ? result.getInt(1) : 0;
+            }
+            logger.info("Server query governor cost limit: {}", limit);
+            serverQueryGovernorCostLimit = limit;
+        }
+        return limit;
+    }
+
+    /**
+     * The cast is applied to the session value only, never to the tenant column,
+     * so the predicate stays sargable and is evaluated as a runtime constant.
+     */
+    @Override
+    public String tenantPredicate(String tenantColumn) {
+        return tenantColumn + " = CAST(SESSION_CONTEXT(N'TenantId') AS bigint)";
+    }
+
+    /**
+     * SQL Server allows only one filter predicate per table, so a single security policy
+     * covers all tenant-scoped tables. The inline table-valued function is schema bound,
+     * which lets the optimizer inline it into every query.
+     * Nothing is dropped: the function and the policy are only created when missing and the
+     * predicates are added or altered in place, so no table is ever without a predicate.
+     * A changed predicate needs a new function name, the bound function cannot be altered.
+     */
+    @Override
+    public List<String> createTenantPolicyDdl(List<TenantScopedTable> tables) {
+        List<String> ddl = new ArrayList<>();
+        // CREATE FUNCTION has to be the only statement of its batch
+        ddl.add("IF OBJECT_ID(N'" + PREDICATE_FUNCTION + "', N'IF') IS NULL "
+                + "EXEC(N'" + predicateFunctionDefinition().replace("'", "''") + "')");
+        if (tables.isEmpty()) {
+            return ddl;
         }
+
+        // A security policy needs at least one predicate, the others are added below
+        TenantScopedTable first = tables.get(0);
+        ddl.add("IF OBJECT_ID(N'" + SECURITY_POLICY + "', N'SP') IS NULL "
+                + "EXEC(N'CREATE SECURITY POLICY " + SECURITY_POLICY
+                + " ADD FILTER PREDICATE " + predicateTarget(first) + " WITH (STATE = ON)')");
+        for (TenantScopedTable table : tables) {
+            ddl.add(addOrAlterPredicate(table, "FILTER", 0));
+            ddl.add(addOrAlterPredicate(table, "BLOCK", 1));
+        }
+        ddl.add("ALTER SECURITY POLICY " + SECURITY_POLICY + " WITH (STATE = ON)");
+        return ddl;
+    }
+
+    /**
+     * The function is only created when missing, an existing function with another body is kept.
+     * OBJECT_DEFINITION returns the original CREATE statement, its WHERE clause is compared to the
+     * tenantPredicate ignoring case and whitespace.
+     */
+    @Override
+    public void checkExistingTenantPolicy(Connection connection) throws SQLException {
+        try (Statement sql = connection.createStatement();
+             ResultSet result = sql.executeQuery("SELECT OBJECT_DEFINITION(OBJECT_ID(N'" + PREDICATE_FUNCTION + "'))")) {
+            String definition = result.next() ? result.getString(1) : null;
+            if (definition != null && !isCurrentPredicateFunction(definition)) {
+                logger.warn("{} exists with a different predicate and is kept, drop the security policy and the function "
+                        + "to recreate them. Existing: {} Expected predicate: {}",
+                        PREDICATE_FUNCTION, definition, tenantPredicate("@tenant_id"));
+            }
+        }
+    }
+
+    boolean isCurrentPredicateFunction(String definition) {
+        return normalize(definition).endsWith("where" + normalize(tenantPredicate("@tenant_id")));
+    }
+
+    private String predicateFunctionDefinition() {
+        return "CREATE FUNCTION " + PREDICATE_FUNCTION + "(@tenant_id bigint) "
+                + "RETURNS TABLE WITH SCHEMABINDING AS "
+                + "RETURN SELECT 1 AS TenantAccessPredicateResult WHERE " + tenantPredicate("@tenant_id");
+    }
+
+    private static String normalize(String sql) {
+        String normalized = sql.replaceAll("\\s+", "").toLowerCase(Locale.ROOT);
+        return normalized.endsWith(";") ? normalized.substring(0, normalized.length() - 1) : normalized;
+    }
+
+    private static String addOrAlterPredicate(TenantScopedTable table, String predicateType, int predicateTypeCode) {
+        String alter = "ALTER SECURITY POLICY " + SECURITY_POLICY + " %s " + predicateType + " PREDICATE " + predicateTarget(table);
+        return "IF EXISTS (SELECT 1 FROM sys.security_predicates WHERE object_id = OBJECT_ID(N'" + SECURITY_POLICY
+                + "') AND target_object_id = OBJECT_ID(N'" + qualified(table.getTableName())
+                + "') AND predicate_type = " + predicateTypeCode + ") "
+                + String.format(alter, "ALTER") + " ELSE " + String.format(alter, "ADD");
+    }
+
+    private static String predicateTarget(TenantScopedTable table) {
+        return PREDICATE_FUNCTION + "(" + table.getTenantColumn() + ") ON " + qualified(table.getTableName());
+    }
+
+    private static String qualified(String tableName) {
+        return tableName.contains(".") ? tableName : "dbo." + tableName;
     }
 }
@@ -3,6 +3,8 @@ package it.wiesner.db.rls.dialect;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,13 +17,28 @@ public class PostgresDialect implements DatabaseDialect {
     
     private static final Logger logger = LoggerFactory.getLogger(PostgresDialect.class);
 
+    /**
+     * Applies statement_timeout, lock_timeout and work_mem together with the tenant variable.
+     * The statements are sent in one execute, which the driver sends in a single round trip.
+     */
     @Override
-    public void setTenantContext(Connection connection, Long tenantId) throws SQLException {
+    public void setTenantContext(Connection connection, Long tenantId, TenantLimits limits) throws SQLException {
         try (Statement sql = connection.createStatement()) {
-            String setTenantId = String.format("SET app.tenant_id = '%d'", tenantId);
+            StringBuilder setTenantContext = new StringBuilder(String.format("SET app.tenant_id = '%d'", tenantId));
+            if (limits != null) {
+                if (limits.getStatementTimeout() != null) {
+                    setTenantContext.append(String.format("; SET statement_timeout = %d", limits.getStatementTimeout().toMillis()));
+                }
+                if (limits.getLockTimeout() != null) {
+                    setTenantContext.append(String.format("; SET lock_timeout = %d", limits.getLockTimeout().toMillis()));
+                }
+                if (limits.getWorkMem() != null) {
+                    setTenantContext.append(String.format("; SET work_mem = '%dkB'", limits.getWorkMem().toKilobytes()));
+                }
+            }
             
-            logger.debug("Setting PostgreSQL tenant context: TenantId={}", tenantId);
-            sql.execute(setTenantId);
+            logger.debug("Setting PostgreSQL tenant context: TenantId={}, limits={}", tenantId, limits);
+            sql.execute(setTenantContext.toString());
         }
     }
 
@@ -29,7 +46,38 @@ public class PostgresDialect implements DatabaseDialect {
     public void clearTenantContext(Connection connection) throws SQLException {
         try (Statement sql = connection.createStatement()) {
             logger.debug("Clearing PostgreSQL tenant context");
-            sql.execute("RESET app.tenant_id");
+            sql.execute("RESET app.tenant_id; RESET statement_timeout; RESET lock_timeout; RESET work_mem");
         }
     }
+
+    /**
+     * The predicate is used directly in the policy instead of a plpgsql function, which the
+     * planner cannot inline. current_setting() is STABLE, so the right hand side is evaluated
+     * once per scan and the predicate becomes an index condition on the tenant column.
+     */
+    @Override
+    public String tenantPredicate(String tenantColumn) {
+        return tenantColumn + " = NULLIF(current_setting('app.tenant_id', TRUE), '')::bigint";
+    }
+
+    /**
+     * FORCE makes the policy apply to the table owner as well, superusers and roles with
+     * BYPASSRLS still bypass it. PostgreSQL DDL is transactional, run in one transaction
+     * the policy is replaced atomically.
+     */
+    @Override
+    public List<String> createTenantPolicyDdl(List<TenantScopedTable> tables) {
+        List<String> ddl = new ArrayList<>();
+        for (TenantScopedTable table : tables) {
+            String predicate = tenantPredicate(table.getTenantColumn());
+            ddl.add("ALTER TABLE " + table.getTableName() + " ENABLE ROW LEVEL SECURITY");
+            ddl.add("ALTER TABLE " + table.getTableName() + " FORCE ROW LEVEL SECURITY");
+            ddl.add("DROP POLICY IF EXISTS tenant_access_policy ON " + table.getTableName());
+            ddl.add("CREATE POLICY tenant_access_policy ON " + table.getTableName()
+                    + " USING (" + predicate + ") WITH CHECK (" + predicate + ")");
+        }
+        // Former plpgsql predicate, no longer referenced by any policy
+        ddl.add("DROP FUNCTION IF EXISTS tenant_access_predicate(bigint)");
+        return ddl;
+    }
 }
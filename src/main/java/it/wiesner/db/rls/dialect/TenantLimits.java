@@ -0,0 +1,55 @@
+package it.wiesner.db.rls.dialect;
+
+import java.time.Duration;
+
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Resource limits of a tenant tier, applied to the connection together with the tenant context.
+ * Limits left null are not applied. Not every database supports every limit.
+ */
+public class TenantLimits {
+
+    private Duration statementTimeout;
+    private Duration lockTimeout;
+    private DataSize workMem;
+    private Integer queryGovernorCostLimit;
+
+    public Duration getStatementTimeout() {
+        return statementTimeout;
+    }
+
+    public void setStatementTimeout(Duration statementTimeout) {
+        this.statementTimeout = statementTimeout;
+    }
+
+    public Duration getLockTimeout() {
+        return lockTimeout;
+    }
+
+    public void setLockTimeout(Duration lockTimeout) {
+        this.lockTimeout = lockTimeout;
+    }
+
+    public DataSize getWorkMem() {
+        return workMem;
+    }
+
+    public void setWorkMem(DataSize workMem) {
+        this.workMem = workMem;
+    }
+
+    public Integer getQueryGovernorCostLimit() {
+        return queryGovernorCostLimit;
+    }
+
+    public void setQueryGovernorCostLimit(Integer queryGovernorCostLimit) {
+        this.queryGovernorCostLimit = queryGovernorCostLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "TenantLimits [statementTimeout=" + statementTimeout + ", lockTimeout=" + lockTimeout
+                + ", workMem=" + workMem + ", queryGovernorCostLimit=" + queryGovernorCostLimit + "]";
+    }
+}
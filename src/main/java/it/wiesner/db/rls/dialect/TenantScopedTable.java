@@ -0,0 +1,28 @@
+package it.wiesner.db.rls.dialect;
+
+/**
+ * A table protected by Row Level Security and the column holding its tenant ID.
+ */
+public class TenantScopedTable {
+
+    private final String tableName;
+    private final String tenantColumn;
+
+    public TenantScopedTable(String tableName, String tenantColumn) {
+        this.tableName = tableName;
+        this.tenantColumn = tenantColumn;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getTenantColumn() {
+        return tenantColumn;
+    }
+
+    @Override
+    public String toString() {
+        return tableName + "(" + tenantColumn + ")";
+    }
+}
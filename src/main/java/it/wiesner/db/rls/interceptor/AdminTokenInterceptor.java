@@ -0,0 +1,52 @@
+package it.wiesner.db.rls.interceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Guards the cross-tenant admin endpoints. A tenant session is not enough, the caller has to send
+ * the configured admin token in the X-Admin-Token header. Without a configured token the admin
+ * endpoints are closed for everyone.
+ */
+@Component
+public class AdminTokenInterceptor implements HandlerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminTokenInterceptor.class);
+    static final String ADMIN_TOKEN_HEADER = "X-Admin-Token";
+
+    private final byte[] adminToken;
+
+    public AdminTokenInterceptor(@Value("${app.admin.token:}") String adminToken) {
+        this.adminToken = adminToken.getBytes(StandardCharsets.UTF_8);
+        if (adminToken.isEmpty()) {
+            log.info("No app.admin.token configured, admin endpoints are disabled");
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (adminToken.length == 0) {
+            log.warn("Rejected admin request, no admin token configured: {}", request.getRequestURI());
+            response.sendError(HttpStatus.FORBIDDEN.value());
+            return false;
+        }
+        String token = request.getHeader(ADMIN_TOKEN_HEADER);
+        // Constant time comparison, the response time must not reveal how much of the token matched
+        if (token == null || !MessageDigest.isEqual(adminToken, token.getBytes(StandardCharsets.UTF_8))) {
+            log.warn("Rejected admin request without valid admin token: {}", request.getRequestURI());
+            response.sendError(HttpStatus.UNAUTHORIZED.value());
+            return false;
+        }
+        return true;
+    }
+}
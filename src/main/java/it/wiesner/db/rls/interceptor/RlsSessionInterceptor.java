@@ -2,9 +2,11 @@ package it.wiesner.db.rls.interceptor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
+import it.wiesner.db.rls.metrics.TenantLoadSketch;
 import it.wiesner.db.rls.session.RlsSessionHolder;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -20,6 +22,9 @@ public class RlsSessionInterceptor implements HandlerInterceptor {
     private static final Logger log = LoggerFactory.getLogger(RlsSessionInterceptor.class);
     private static final String RLS_SESSION_ATTR = "RLS_SESSION";
 
+    @Autowired
+    private TenantLoadSketch tenantLoadSketch;
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
         HttpSession httpSession = request.getSession(false);
@@ -32,6 +37,7 @@ public class RlsSessionInterceptor implements HandlerInterceptor {
                 // Copy session from HTTP session to ThreadLocal
                 RlsSessionHolder.setRlsSession(rlsSession.tenantId);
                 log.debug("Copied RLS session to ThreadLocal - TenantId: {}", rlsSession.tenantId);
+                tenantLoadSketch.record(rlsSession.tenantId, TenantLoadSketch.Metric.REQUESTS, 1);
             } else {
                 log.debug("No RLS session found in HTTP session for request: {}", request.getRequestURI());
             }
@@ -0,0 +1,34 @@
+package it.wiesner.db.rls.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint listing the tenants currently driving the load: /actuator/tenantload
+ * Optional parameters: limit (default 10) and metric (REQUESTS, CONNECTION_HOLD_MICROS, ROWS_RETURNED).
+ */
+@Component
+@Endpoint(id = "tenantload")
+public class TenantLoadEndpoint {
+
+	private final TenantLoadSketch tenantLoadSketch;
+
+	public TenantLoadEndpoint(TenantLoadSketch tenantLoadSketch) {
+		this.tenantLoadSketch = tenantLoadSketch;
+	}
+
+	@ReadOperation
+	public Map<String, Object> topTenants(@Nullable Integer limit, @Nullable TenantLoadSketch.Metric metric) {
+		TenantLoadSketch.Metric rankedBy = metric != null ? metric : TenantLoadSketch.Metric.REQUESTS;
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("window", tenantLoadSketch.getWindow().toString());
+		result.put("rankedBy", rankedBy);
+		result.put("tenants", tenantLoadSketch.topTenants(rankedBy, limit != null ? limit : 10));
+		return result;
+	}
+}
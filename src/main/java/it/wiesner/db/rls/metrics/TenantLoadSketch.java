@@ -0,0 +1,223 @@
+package it.wiesner.db.rls.metrics;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded memory estimate of the load per tenant over a sliding window, without tagging
+ * metrics with the tenant ID. Counts are kept in count-min sketches, one per time bucket,
+ * updated lock-free with atomic adds. A bounded set of candidate tenants is ranked by the
+ * sketch estimates to find the heavy hitters. Estimates never undercount, hash collisions
+ * can only make a tenant look heavier than it is.
+ */
+@Component
+public class TenantLoadSketch {
+
+	private static final Logger log = LoggerFactory.getLogger(TenantLoadSketch.class);
+
+	private static final long[] SEEDS = { 0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L,
+			0xD6E8FEB86659FD93L, 0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x27D4EB2F165667C5L, 0x85EBCA77C2B2AE63L };
+
+	public enum Metric {
+		REQUESTS, CONNECTION_HOLD_MICROS, ROWS_RETURNED
+	}
+
+	private final int depth;
+	private final int width;
+	private final long bucketMillis;
+	private final Bucket[] buckets;
+	private final int candidateCapacity;
+	private final Clock clock;
+
+	// Tenant ID -> epoch of the bucket the tenant was last seen in
+	private final Map<Long, Long> candidates = new ConcurrentHashMap<>();
+
+	@Autowired
+	public TenantLoadSketch(@Value("${app.tenant-load.depth:4}") int depth,
+			@Value("${app.tenant-load.width:1024}") int width,
+			@Value("${app.tenant-load.window:60s}") Duration window,
+			@Value("${app.tenant-load.buckets:6}") int bucketCount,
+			@Value("${app.tenant-load.candidates:256}") int candidateCapacity) {
+		this(depth, width, window, bucketCount, candidateCapacity, Clock.systemUTC());
+	}
+
+	TenantLoadSketch(int depth, int width, Duration window, int bucketCount, int candidateCapacity, Clock clock) {
+		this.clock = clock;
+		this.depth = Math.min(depth, SEEDS.length);
+		this.width = Integer.highestOneBit(Math.max(width, 16));
+		this.bucketMillis = Math.max(1, window.toMillis() / bucketCount);
+		this.buckets = new Bucket[bucketCount];
+		for (int i = 0; i < bucketCount; i++) {
+			buckets[i] = new Bucket(Metric.values().length * this.depth * this.width);
+		}
+		this.candidateCapacity = candidateCapacity;
+		log.info("Tenant load sketch: {}x{} counters per metric, {} buckets of {} ms, {} candidates",
+				this.depth, this.width, bucketCount, bucketMillis, candidateCapacity);
+	}
+
+	public void record(Long tenantId, Metric metric, long amount) {
+		if (tenantId == null || amount <= 0) {
+			return;
+		}
+		long epoch = clock.millis() / bucketMillis;
+		Bucket bucket = bucketFor(epoch);
+		for (int d = 0; d < depth; d++) {
+			bucket.counters.getAndAdd(index(metric, d, tenantId), amount);
+		}
+		// Only the first update per tenant and bucket writes to the map, all others just read it.
+		// Full candidate set: new tenants get a slot after the next pruning, at the latest one bucket later
+		Long lastSeen = candidates.get(tenantId);
+		if (lastSeen == null) {
+			if (candidates.size() < candidateCapacity) {
+				candidates.putIfAbsent(tenantId, epoch);
+			}
+		} else if (lastSeen != epoch) {
+			candidates.put(tenantId, epoch);
+		}
+	}
+
+	/**
+	 * The current heavy hitters over the sliding window.
+	 * @param metric The metric to rank by
+	 * @param limit The maximum number of tenants
+	 * @return the tenants with their estimated load, highest first
+	 */
+	public List<TenantLoad> topTenants(Metric metric, int limit) {
+		long epoch = clock.millis() / bucketMillis;
+		List<TenantLoad> loads = new ArrayList<>(candidates.size());
+		for (Long tenantId : candidates.keySet()) {
+			loads.add(new TenantLoad(tenantId, estimate(tenantId, Metric.REQUESTS, epoch),
+					estimate(tenantId, Metric.CONNECTION_HOLD_MICROS, epoch), estimate(tenantId, Metric.ROWS_RETURNED, epoch)));
+		}
+		loads.sort(Comparator.comparingLong((TenantLoad load) -> load.get(metric)).reversed());
+		return loads.subList(0, Math.min(limit, loads.size()));
+	}
+
+	/**
+	 * The tenants seen within about the sliding window, as far as the candidate set holds them.
+	 */
+	public Set<Long> getRecentTenants() {
+		return Set.copyOf(candidates.keySet());
+	}
+
+	public Duration getWindow() {
+		return Duration.ofMillis(bucketMillis * buckets.length);
+	}
+
+	private long estimate(Long tenantId, Metric metric, long currentEpoch) {
+		long total = 0;
+		for (Bucket bucket : buckets) {
+			if (currentEpoch - bucket.epoch.get() >= buckets.length) {
+				continue;
+			}
+			long min = Long.MAX_VALUE;
+			for (int d = 0; d < depth; d++) {
+				min = Math.min(min, bucket.counters.get(index(metric, d, tenantId)));
+			}
+			total += min;
+		}
+		return total;
+	}
+
+	private Bucket bucketFor(long epoch) {
+		Bucket bucket = buckets[(int) (epoch % buckets.length)];
+		long current = bucket.epoch.get();
+		// Only one thread wins the rotation, concurrent adds during the reset are lost, which a sketch tolerates
+		if (current != epoch && bucket.epoch.compareAndSet(current, epoch)) {
+			for (int i = 0; i < bucket.counters.length(); i++) {
+				bucket.counters.set(i, 0);
+			}
+			pruneCandidates(epoch);
+		}
+		return bucket;
+	}
+
+	// Drops tenants not seen within the window, then keeps the heaviest per metric if still full,
+	// so a tenant with few requests but many rows or long connection holds is not evicted
+	private void pruneCandidates(long epoch) {
+		candidates.values().removeIf(lastSeen -> epoch - lastSeen >= buckets.length);
+		if (candidates.size() >= candidateCapacity) {
+			int keepPerMetric = Math.max(1, candidateCapacity / 2 / Metric.values().length);
+			Set<Long> keep = new HashSet<>();
+			for (Metric metric : Metric.values()) {
+				List<Long> ranked = new ArrayList<>(candidates.keySet());
+				ranked.sort(Comparator.comparingLong((Long tenantId) -> estimate(tenantId, metric, epoch)).reversed());
+				keep.addAll(ranked.subList(0, Math.min(keepPerMetric, ranked.size())));
+			}
+			candidates.keySet().retainAll(keep);
+		}
+	}
+
+	private int index(Metric metric, int row, long tenantId) {
+		long h = tenantId * SEEDS[row];
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		return (metric.ordinal() * depth + row) * width + (int) (h & (width - 1));
+	}
+
+	private static class Bucket {
+		private final AtomicLong epoch = new AtomicLong(-1);
+		private final AtomicLongArray counters;
+
+		Bucket(int size) {
+			this.counters = new AtomicLongArray(size);
+		}
+	}
+
+	public static class TenantLoad {
+		private final Long tenantId;
+		private final long requests;
+		private final long connectionHoldMicros;
+		private final long rowsReturned;
+
+		public TenantLoad(Long tenantId, long requests, long connectionHoldMicros, long rowsReturned) {
+			this.tenantId = tenantId;
+			this.requests = requests;
+			this.connectionHoldMicros = connectionHoldMicros;
+			this.rowsReturned = rowsReturned;
+		}
+
+		long get(Metric metric) {
+			switch (metric) {
+			case CONNECTION_HOLD_MICROS:
+				return connectionHoldMicros;
+			case ROWS_RETURNED:
+				return rowsReturned;
+			default:
+				return requests;
+			}
+		}
+
+		public Long getTenantId() {
+			return tenantId;
+		}
+
+		public long getRequests() {
+			return requests;
+		}
+
+		public long getConnectionHoldMicros() {
+			return connectionHoldMicros;
+		}
+
+		public long getRowsReturned() {
+			return rowsReturned;
+		}
+	}
+}
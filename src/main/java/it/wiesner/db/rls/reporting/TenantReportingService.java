@@ -0,0 +1,128 @@
+package it.wiesner.db.rls.reporting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import it.wiesner.db.rls.datamodel.OrdersRepository;
+import it.wiesner.db.rls.session.RlsSessionHolder;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs the same OrdersRepository query for a list of tenants without an RLS bypass.
+ * Every tenant query runs on its own worker thread with its own connection, the
+ * TenantAwareDataSource sets the tenant context through the DatabaseDialect as usual.
+ * The worker pool is shared by all reports, so reporting never holds more than
+ * maxConcurrency connections of the pool.
+ */
+@Component
+@ConditionalOnProperty(name = "app.reporting.enabled", havingValue = "true")
+public class TenantReportingService {
+
+	private static final Logger log = LoggerFactory.getLogger(TenantReportingService.class);
+
+	private final OrdersRepository ordersRepository;
+	private final TransactionTemplate readOnlyTransaction;
+	private final ExecutorService workers;
+
+	public TenantReportingService(OrdersRepository ordersRepository, PlatformTransactionManager transactionManager,
+			@Value("${app.reporting.max-concurrency:2}") int maxConcurrency) {
+		this.ordersRepository = ordersRepository;
+		this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+		this.readOnlyTransaction.setReadOnly(true);
+		this.workers = Executors.newFixedThreadPool(maxConcurrency, new CustomizableThreadFactory("tenant-report-"));
+		log.info("Tenant reporting enabled with max concurrency: {}", maxConcurrency);
+	}
+
+	/**
+	 * Runs the query for every tenant and hands each result to the consumer as soon as it is
+	 * available, in completion order. The consumer is called on the calling thread only. If the
+	 * consumer throws, e.g. because the client went away, the remaining tenant queries are cancelled.
+	 * @param tenantIds The tenants to report on
+	 * @param query The query to run in the context of each tenant
+	 * @param consumer Receives one result per tenant, failed tenants carry the error message
+	 */
+	public <T> void forEachTenant(List<Long> tenantIds, Function<OrdersRepository, T> query,
+			Consumer<TenantResult<T>> consumer) throws InterruptedException {
+		CompletionService<TenantResult<T>> completion = new ExecutorCompletionService<>(workers);
+		List<Future<TenantResult<T>>> tasks = new ArrayList<>(tenantIds.size());
+		try {
+			for (Long tenantId : tenantIds) {
+				tasks.add(completion.submit(() -> runForTenant(tenantId, query)));
+			}
+			for (int i = 0; i < tenantIds.size(); i++) {
+				Future<TenantResult<T>> done = completion.take();
+				try {
+					consumer.accept(done.get());
+				} catch (ExecutionException e) {
+					// runForTenant catches query errors, this only happens for unexpected failures
+					log.error("Tenant report task failed", e.getCause());
+				}
+			}
+		} finally {
+			// Nobody reads the results anymore, give the workers and connections back to the other reports
+			for (Future<TenantResult<T>> task : tasks) {
+				task.cancel(true);
+			}
+		}
+	}
+
+	private <T> TenantResult<T> runForTenant(Long tenantId, Function<OrdersRepository, T> query) {
+		// Worker threads are pooled, never rely on an inherited session
+		RlsSessionHolder.setRlsSession(tenantId);
+		try {
+			T value = readOnlyTransaction.execute(tx -> query.apply(ordersRepository));
+			return new TenantResult<>(tenantId, value, null);
+		} catch (Exception e) {
+			log.warn("Report query failed for tenant: {}", tenantId, e);
+			return new TenantResult<>(tenantId, null, e.getMessage());
+		} finally {
+			RlsSessionHolder.clear();
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		workers.shutdownNow();
+	}
+
+	public static class TenantResult<T> {
+		private final Long tenantId;
+		private final T value;
+		private final String error;
+
+		public TenantResult(Long tenantId, T value, String error) {
+			this.tenantId = tenantId;
+			this.value = value;
+			this.error = error;
+		}
+
+		public Long getTenantId() {
+			return tenantId;
+		}
+
+		public T getValue() {
+			return value;
+		}
+
+		public String getError() {
+			return error;
+		}
+	}
+}
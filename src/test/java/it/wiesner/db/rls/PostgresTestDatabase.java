@@ -0,0 +1,40 @@
+package it.wiesner.db.rls;
+
+import org.junit.jupiter.api.Assumptions;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * PostgreSQL for the integration tests. Uses the database given with -Dtest.postgres.url
+ * (and test.postgres.user / test.postgres.password), otherwise a Testcontainers PostgreSQL.
+ * Without either the calling test is skipped. The user must be allowed to create roles.
+ */
+public final class PostgresTestDatabase {
+
+	private static PostgreSQLContainer<?> container;
+
+	private PostgresTestDatabase() {
+	}
+
+	public static synchronized PGSimpleDataSource dataSource() {
+		PGSimpleDataSource dataSource = new PGSimpleDataSource();
+		String url = System.getProperty("test.postgres.url");
+		if (url != null) {
+			dataSource.setUrl(url);
+			dataSource.setUser(System.getProperty("test.postgres.user", "postgres"));
+			dataSource.setPassword(System.getProperty("test.postgres.password", ""));
+			return dataSource;
+		}
+		Assumptions.assumeTrue(DockerClientFactory.instance().isDockerAvailable(),
+				"No PostgreSQL available, start Docker or set -Dtest.postgres.url");
+		if (container == null) {
+			container = new PostgreSQLContainer<>("postgres:16-alpine");
+			container.start();
+		}
+		dataSource.setUrl(container.getJdbcUrl());
+		dataSource.setUser(container.getUsername());
+		dataSource.setPassword(container.getPassword());
+		return dataSource;
+	}
+}
@@ -0,0 +1,73 @@
+package it.wiesner.db.rls.archive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import it.wiesner.db.rls.datamodel.OrdersRepository;
+import it.wiesner.db.rls.metrics.TenantLoadSketch;
+import it.wiesner.db.rls.session.RlsSessionHolder;
+
+class OrdersArchiverTest {
+
+	private static final List<String> STATUSES = List.of("COMPLETED", "CANCELLED");
+	private static final PageRequest PAGE = PageRequest.of(0, 2);
+
+	private final OrdersRepository ordersRepository = mock(OrdersRepository.class);
+	private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+	private final List<Long> deletedWithSession = new ArrayList<>();
+	private OrdersArchiver archiver;
+
+	@BeforeEach
+	void createArchiver() {
+		when(transactionTemplate.execute(any())).thenAnswer(call -> ((TransactionCallback<?>) call.getArgument(0)).doInTransaction(null));
+		when(ordersRepository.deleteByIds(any())).thenAnswer(call -> {
+			deletedWithSession.add(RlsSessionHolder.getRlsSession().tenantId);
+			return ((List<?>) call.getArgument(0)).size();
+		});
+		archiver = new OrdersArchiver(ordersRepository, transactionTemplate, mock(TenantLoadSketch.class),
+				List.of(1L, 2L), STATUSES, 365, 2, 0);
+	}
+
+	@Test
+	void batchesContinueAfterTheLastArchivedId() throws Exception {
+		when(ordersRepository.findArchivableIds(eq(Long.MIN_VALUE), eq(STATUSES), any(), eq(PAGE)))
+				.thenReturn(List.of(3L, 7L), List.of());
+		when(ordersRepository.findArchivableIds(eq(7L), eq(STATUSES), any(), eq(PAGE))).thenReturn(List.of(9L));
+
+		archiver.archive();
+
+		verify(ordersRepository).copyToArchive(List.of(3L, 7L));
+		verify(ordersRepository).copyToArchive(List.of(9L));
+		verify(ordersRepository).findArchivableIds(eq(7L), eq(STATUSES), eq(LocalDate.now().minusDays(365)), eq(PAGE));
+		// Tenant 1 in two batches, tenant 2 had nothing to archive
+		assertEquals(List.of(1L, 1L), deletedWithSession);
+	}
+
+	@Test
+	void failingTenantDoesNotStopTheOthers() throws Exception {
+		when(ordersRepository.findArchivableIds(eq(Long.MIN_VALUE), eq(STATUSES), any(), eq(PAGE)))
+				.thenThrow(new IllegalStateException("lock timeout"))
+				.thenReturn(List.of(4L));
+
+		archiver.archive();
+
+		verify(ordersRepository).copyToArchive(List.of(4L));
+		verify(ordersRepository, never()).findArchivableIds(eq(4L), any(), any(), any());
+		assertEquals(List.of(2L), deletedWithSession);
+	}
+}
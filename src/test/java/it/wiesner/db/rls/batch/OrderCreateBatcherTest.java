@@ -0,0 +1,141 @@
+package it.wiesner.db.rls.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import it.wiesner.db.rls.datamodel.Orders;
+import it.wiesner.db.rls.datamodel.OrdersRepository;
+import it.wiesner.db.rls.session.RlsSessionHolder;
+
+class OrderCreateBatcherTest {
+
+	private static final Duration NEVER = Duration.ofHours(1);
+
+	private final OrdersRepository ordersRepository = mock(OrdersRepository.class);
+	private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+	private final AtomicLong nextId = new AtomicLong(1);
+	// Tenant of the session each save ran with, next to the tenant of the order
+	private final List<Long[]> savedWithSession = new CopyOnWriteArrayList<>();
+	private OrderCreateBatcher batcher;
+
+	@BeforeEach
+	void mockRepository() {
+		when(transactionTemplate.execute(any()))
+				.thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+		when(ordersRepository.save(any())).thenAnswer(invocation -> {
+			Orders order = invocation.getArgument(0);
+			if ("INVALID".equals(order.getOrderNumber())) {
+				throw new IllegalArgumentException("invalid order");
+			}
+			savedWithSession.add(new Long[] { RlsSessionHolder.getRlsSession().tenantId, order.getTenantId() });
+			order.setOrderId(nextId.getAndIncrement());
+			return order;
+		});
+	}
+
+	@AfterEach
+	void shutdown() throws InterruptedException {
+		if (batcher != null) {
+			batcher.shutdown();
+		}
+	}
+
+	@Test
+	void fullBatchIsWrittenInOneTransaction() throws Exception {
+		batcher = batcher(3, NEVER);
+
+		List<CompletableFuture<Orders>> results = List.of(
+				batcher.submit(1L, order(1L, "ORD-1")),
+				batcher.submit(1L, order(1L, "ORD-2")),
+				batcher.submit(1L, order(1L, "ORD-3")));
+
+		for (CompletableFuture<Orders> result : results) {
+			result.get(5, TimeUnit.SECONDS);
+		}
+		verify(transactionTemplate, times(1)).execute(any());
+		verify(ordersRepository, times(3)).save(any());
+	}
+
+	@Test
+	void partialBatchIsWrittenAfterMaxWait() throws Exception {
+		batcher = batcher(50, Duration.ofMillis(20));
+
+		CompletableFuture<Orders> first = batcher.submit(1L, order(1L, "ORD-1"));
+		CompletableFuture<Orders> second = batcher.submit(1L, order(1L, "ORD-2"));
+
+		first.get(5, TimeUnit.SECONDS);
+		second.get(5, TimeUnit.SECONDS);
+		verify(transactionTemplate, times(1)).execute(any());
+	}
+
+	@Test
+	void tenantsAreBatchedSeparately() throws Exception {
+		batcher = batcher(2, NEVER);
+
+		CompletableFuture<Orders> tenant1First = batcher.submit(1L, order(1L, "ORD-1"));
+		CompletableFuture<Orders> tenant2 = batcher.submit(2L, order(2L, "ORD-2"));
+		CompletableFuture<Orders> tenant1Second = batcher.submit(1L, order(1L, "ORD-3"));
+
+		tenant1First.get(5, TimeUnit.SECONDS);
+		tenant1Second.get(5, TimeUnit.SECONDS);
+		// The order of tenant 2 does not fill the batch of tenant 1
+		assertFalse(tenant2.isDone());
+
+		batcher.shutdown();
+		tenant2.get(5, TimeUnit.SECONDS);
+		batcher = null;
+		assertEquals(3, savedWithSession.size());
+		for (Long[] saved : savedWithSession) {
+			assertEquals(saved[1], saved[0], "Order written with the session of another tenant");
+		}
+	}
+
+	@Test
+	void failingOrderOnlyFailsItsOwnCaller() throws Exception {
+		batcher = batcher(3, NEVER);
+
+		CompletableFuture<Orders> valid1 = batcher.submit(1L, order(1L, "ORD-1"));
+		CompletableFuture<Orders> invalid = batcher.submit(1L, order(1L, "INVALID"));
+		CompletableFuture<Orders> valid2 = batcher.submit(1L, order(1L, "ORD-3"));
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> invalid.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(IllegalArgumentException.class, e.getCause());
+		assertEquals("ORD-1", valid1.get(5, TimeUnit.SECONDS).getOrderNumber());
+		assertEquals("ORD-3", valid2.get(5, TimeUnit.SECONDS).getOrderNumber());
+		// One failed batch transaction, then one transaction per order
+		verify(transactionTemplate, times(4)).execute(any());
+	}
+
+	private OrderCreateBatcher batcher(int maxBatchSize, Duration maxWait) {
+		return new OrderCreateBatcher(ordersRepository, transactionTemplate, maxBatchSize, maxWait, 2,
+				Duration.ofSeconds(10));
+	}
+
+	private static Orders order(Long tenantId, String orderNumber) {
+		Orders order = new Orders();
+		order.setTenantId(tenantId);
+		order.setOrderNumber(orderNumber);
+		return order;
+	}
+}
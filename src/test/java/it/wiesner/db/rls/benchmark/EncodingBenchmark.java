@@ -0,0 +1,112 @@
+package it.wiesner.db.rls.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import it.wiesner.db.rls.config.OrdersAvroHttpMessageConverter;
+import it.wiesner.db.rls.datamodel.Orders;
+
+/**
+ * Serializes an order list with the message converters of GET /rls/orders, with and without
+ * gzip, and prints bytes and CPU time per list. No server and no database involved.
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=it.wiesner.db.rls.benchmark.EncodingBenchmark
+ * </pre>
+ * Optional arguments: number of orders (10000), measured iterations (50).
+ */
+public class EncodingBenchmark {
+
+	private static final String[] STATUSES = { "PENDING", "SHIPPED", "COMPLETED", "CANCELLED" };
+	private static final String[] CUSTOMERS = { "Socrates", "Plato", "Aristotle", "Kant", "Hegel", "Nietzsche" };
+	private static final Type ORDER_LIST = ResolvableType.forClassWithGenerics(List.class, Orders.class).getType();
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) throws IOException {
+		int orderCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		List<Orders> orders = orders(orderCount);
+
+		System.out.printf("%d orders, %d iterations%n%n", orderCount, iterations);
+		System.out.println("| Encoding | gzip | Bytes | CPU ms per list |");
+		System.out.println("|----------|------|-------|-----------------|");
+		run("JSON", new MappingJackson2HttpMessageConverter(), MediaType.APPLICATION_JSON, orders, iterations);
+		run("CBOR", new MappingJackson2CborHttpMessageConverter(), MediaType.APPLICATION_CBOR, orders, iterations);
+		run("Smile", new MappingJackson2SmileHttpMessageConverter(), new MediaType("application", "x-jackson-smile"),
+				orders, iterations);
+		run("Avro", new OrdersAvroHttpMessageConverter(), OrdersAvroHttpMessageConverter.APPLICATION_AVRO, orders,
+				iterations);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void run(String name, GenericHttpMessageConverter<?> converter, MediaType mediaType,
+			List<Orders> orders, int iterations) throws IOException {
+		GenericHttpMessageConverter<Object> writer = (GenericHttpMessageConverter<Object>) converter;
+		for (boolean gzip : new boolean[] { false, true }) {
+			// Warm-up, lets the JIT compile the serializers before measuring
+			long bytes = 0;
+			for (int i = 0; i < Math.max(10, iterations / 2); i++) {
+				bytes = write(writer, mediaType, orders, gzip);
+			}
+			long start = THREADS.getCurrentThreadCpuTime();
+			for (int i = 0; i < iterations; i++) {
+				write(writer, mediaType, orders, gzip);
+			}
+			double cpuMillis = (THREADS.getCurrentThreadCpuTime() - start) / 1_000_000.0 / iterations;
+			System.out.printf("| %s | %s | %,d | %.2f |%n", name, gzip ? "yes" : "no", bytes, cpuMillis);
+		}
+	}
+
+	private static long write(GenericHttpMessageConverter<Object> writer, MediaType mediaType, List<Orders> orders,
+			boolean gzip) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+		try (OutputStream body = gzip ? new GZIPOutputStream(bytes, 8192) : bytes) {
+			writer.write(orders, ORDER_LIST, mediaType, new HttpOutputMessage() {
+				private final HttpHeaders headers = new HttpHeaders();
+
+				@Override
+				public OutputStream getBody() {
+					return body;
+				}
+
+				@Override
+				public HttpHeaders getHeaders() {
+					return headers;
+				}
+			});
+		}
+		return bytes.size();
+	}
+
+	private static List<Orders> orders(int count) {
+		List<Orders> orders = new ArrayList<>(count);
+		LocalDate start = LocalDate.of(2025, 1, 1);
+		for (int i = 1; i <= count; i++) {
+			Orders order = new Orders();
+			order.setOrderId((long) i);
+			order.setOrderNumber(String.format("ORD-%06d", i));
+			order.setTenantId(1L);
+			order.setOrderDate(start.plusDays(i % 365));
+			order.setOrderStatus(STATUSES[i % STATUSES.length]);
+			order.setCustomername(CUSTOMERS[i % CUSTOMERS.length]);
+			orders.add(order);
+		}
+		return orders;
+	}
+}
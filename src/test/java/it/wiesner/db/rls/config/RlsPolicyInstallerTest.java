@@ -0,0 +1,79 @@
+package it.wiesner.db.rls.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import it.wiesner.db.rls.PostgresTestDatabase;
+import it.wiesner.db.rls.dialect.PostgresDialect;
+import it.wiesner.db.rls.dialect.TenantScopedTable;
+
+class RlsPolicyInstallerTest {
+
+	private static final String SCHEMA = "rls_installer_test";
+	private static final TenantScopedTable ORDERS = new TenantScopedTable("orders", "tenant_id");
+	private static final TenantScopedTable ARCHIVE = new TenantScopedTable("orders_archive", "tenant_id");
+
+	private PGSimpleDataSource dataSource;
+
+	@BeforeEach
+	void createSchema() throws SQLException {
+		dataSource = PostgresTestDatabase.dataSource();
+		try (Connection connection = dataSource.getConnection(); Statement sql = connection.createStatement()) {
+			sql.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+			sql.execute("CREATE SCHEMA " + SCHEMA);
+			sql.execute("CREATE TABLE " + SCHEMA + ".orders (order_id bigint PRIMARY KEY, tenant_id bigint NOT NULL)");
+			sql.execute("CREATE TABLE " + SCHEMA + ".orders_archive (order_id bigint PRIMARY KEY, tenant_id bigint NOT NULL)");
+		}
+		dataSource.setCurrentSchema(SCHEMA);
+	}
+
+	@Test
+	void installsForcedPolicies() throws SQLException {
+		new RlsPolicyInstaller(dataSource, new PostgresDialect(), null).installPolicies(List.of(ORDERS, ARCHIVE));
+
+		assertEquals("orders:true:true:1", policyState("orders"));
+		assertEquals("orders_archive:true:true:1", policyState("orders_archive"));
+	}
+
+	@Test
+	void failedInstallationLeavesPreviousPoliciesUntouched() throws SQLException {
+		new RlsPolicyInstaller(dataSource, new PostgresDialect(), null).installPolicies(List.of(ORDERS));
+
+		PostgresDialect failingDialect = new PostgresDialect() {
+			@Override
+			public List<String> createTenantPolicyDdl(List<TenantScopedTable> tables) {
+				List<String> ddl = new ArrayList<>(super.createTenantPolicyDdl(tables));
+				ddl.add("ALTER TABLE missing_table ENABLE ROW LEVEL SECURITY");
+				return ddl;
+			}
+		};
+		RlsPolicyInstaller installer = new RlsPolicyInstaller(dataSource, failingDialect, null);
+		assertThrows(SQLException.class, () -> installer.installPolicies(List.of(ORDERS, ARCHIVE)));
+
+		assertEquals("orders:true:true:1", policyState("orders"));
+		assertEquals("orders_archive:false:false:0", policyState("orders_archive"));
+	}
+
+	// table:rls enabled:rls forced:number of policies
+	private String policyState(String table) throws SQLException {
+		try (Connection connection = dataSource.getConnection(); Statement sql = connection.createStatement();
+				ResultSet rows = sql.executeQuery("SELECT c.relname, c.relrowsecurity, c.relforcerowsecurity, "
+						+ "(SELECT count(*) FROM pg_policy p WHERE p.polrelid = c.oid) FROM pg_class c "
+						+ "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE n.nspname = '" + SCHEMA
+						+ "' AND c.relname = '" + table + "'")) {
+			rows.next();
+			return rows.getString(1) + ":" + rows.getBoolean(2) + ":" + rows.getBoolean(3) + ":" + rows.getLong(4);
+		}
+	}
+}
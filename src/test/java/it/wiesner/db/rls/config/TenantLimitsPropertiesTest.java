@@ -0,0 +1,54 @@
+package it.wiesner.db.rls.config;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import it.wiesner.db.rls.dialect.TenantLimits;
+
+class TenantLimitsPropertiesTest {
+
+    @Test
+    void unknownDefaultTierIsRejected() {
+        TenantLimitsProperties properties = properties(Map.of("premium", new TenantLimits()), Map.of());
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, properties::validate);
+        assertTrue(e.getMessage().contains("[standard]"), e.getMessage());
+    }
+
+    @Test
+    void unknownAssignedTierIsRejected() {
+        TenantLimitsProperties properties = properties(Map.of("standard", new TenantLimits()), Map.of(7L, "premum"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, properties::validate);
+        assertTrue(e.getMessage().contains("[premum]"), e.getMessage());
+    }
+
+    @Test
+    void knownTiersAreAccepted() {
+        TenantLimitsProperties properties = properties(
+                Map.of("standard", new TenantLimits(), "premium", new TenantLimits()), Map.of(7L, "premium"));
+
+        assertDoesNotThrow(properties::validate);
+    }
+
+    @Test
+    void disabledLimitsAreNotValidated() {
+        TenantLimitsProperties properties = properties(Map.of(), Map.of(7L, "premium"));
+        properties.setEnabled(false);
+
+        assertDoesNotThrow(properties::validate);
+    }
+
+    private static TenantLimitsProperties properties(Map<String, TenantLimits> tiers, Map<Long, String> tenants) {
+        TenantLimitsProperties properties = new TenantLimitsProperties();
+        properties.setEnabled(true);
+        properties.setTiers(tiers);
+        properties.setTenants(tenants);
+        return properties;
+    }
+}
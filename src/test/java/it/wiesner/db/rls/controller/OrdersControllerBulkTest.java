@@ -0,0 +1,145 @@
+package it.wiesner.db.rls.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import it.wiesner.db.rls.controller.OrdersController.BulkOrderRequest;
+import it.wiesner.db.rls.controller.OrdersController.BulkOrderResponse;
+import it.wiesner.db.rls.datamodel.OrdersRepository;
+import it.wiesner.db.rls.metrics.TenantLoadSketch;
+import it.wiesner.db.rls.session.RlsSessionHolder;
+
+@ExtendWith(MockitoExtension.class)
+class OrdersControllerBulkTest {
+
+	@Mock
+	private OrdersRepository ordersRepository;
+
+	@Mock
+	private TransactionTemplate transactionTemplate;
+
+	@Mock
+	private TenantLoadSketch tenantLoadSketch;
+
+	@InjectMocks
+	private OrdersController controller;
+
+	// Order id to status of the tenant, the repository mock works on it
+	private final Map<Long, String> orders = new TreeMap<>();
+
+	@BeforeEach
+	void mockRepository() {
+		RlsSessionHolder.setRlsSession(1L);
+		lenient().when(transactionTemplate.execute(any()))
+				.thenAnswer(call -> ((TransactionCallback<?>) call.getArgument(0)).doInTransaction(null));
+		lenient().when(ordersRepository.findIdsByFilter(any(), anyString(), isNull(), isNull(), isNull(), any()))
+				.thenAnswer(call -> {
+					Long afterId = call.getArgument(0);
+					String status = call.getArgument(1);
+					Pageable page = call.getArgument(5);
+					return orders.entrySet().stream()
+							.filter(order -> order.getKey() > afterId && order.getValue().equals(status))
+							.map(Map.Entry::getKey)
+							.limit(page.getPageSize())
+							.toList();
+				});
+		lenient().when(ordersRepository.updateStatusByIds(anyString(), anyList())).thenAnswer(call -> {
+			List<Long> ids = call.getArgument(1);
+			ids.forEach(id -> orders.put(id, call.getArgument(0)));
+			return ids.size();
+		});
+	}
+
+	@AfterEach
+	void clearSession() {
+		RlsSessionHolder.clear();
+	}
+
+	@Test
+	void deleteWithoutFilterIsRejected() {
+		BulkOrderRequest request = new BulkOrderRequest();
+		request.setChunkSize(100);
+
+		ResponseEntity<BulkOrderResponse> response = controller.deleteOrdersBulk(request);
+
+		assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+		verifyNoInteractions(ordersRepository);
+	}
+
+	@Test
+	void statusUpdateWithoutNewStatusIsRejected() {
+		BulkOrderRequest request = new BulkOrderRequest();
+		request.setStatus("PENDING");
+
+		ResponseEntity<BulkOrderResponse> response = controller.updateOrderStatusBulk(request);
+
+		assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+		verifyNoInteractions(ordersRepository);
+	}
+
+	@Test
+	void chunksAdvancePastRowsThatNoLongerMatchTheFilter() {
+		for (long id = 1; id <= 5; id++) {
+			orders.put(id, "PENDING");
+		}
+		orders.put(6L, "SHIPPED");
+
+		ResponseEntity<BulkOrderResponse> response = controller.updateOrderStatusBulk(bulkStatusUpdate("PENDING", "SHIPPED"));
+
+		assertEquals(5, response.getBody().getAffected());
+		assertEquals(Map.of(1L, "SHIPPED", 2L, "SHIPPED", 3L, "SHIPPED", 4L, "SHIPPED", 5L, "SHIPPED", 6L, "SHIPPED"), orders);
+		verify(ordersRepository).updateStatusByIds("SHIPPED", List.of(1L, 2L));
+		verify(ordersRepository).updateStatusByIds("SHIPPED", List.of(3L, 4L));
+		verify(ordersRepository).updateStatusByIds("SHIPPED", List.of(5L));
+		// Each chunk continues after the last id of the previous one
+		verify(ordersRepository).findIdsByFilter(4L, "PENDING", null, null, null, PageRequest.of(0, 2));
+	}
+
+	@Test
+	void chunksAdvancePastRowsThatStillMatchTheFilter() {
+		for (long id = 1; id <= 4; id++) {
+			orders.put(id, "PENDING");
+		}
+
+		ResponseEntity<BulkOrderResponse> response = controller.updateOrderStatusBulk(bulkStatusUpdate("PENDING", "PENDING"));
+
+		// Every order exactly once, the updated rows are not picked up again
+		assertEquals(4, response.getBody().getAffected());
+		verify(ordersRepository).updateStatusByIds("PENDING", List.of(1L, 2L));
+		verify(ordersRepository).updateStatusByIds("PENDING", List.of(3L, 4L));
+		verify(ordersRepository).findIdsByFilter(4L, "PENDING", null, null, null, PageRequest.of(0, 2));
+	}
+
+	private static BulkOrderRequest bulkStatusUpdate(String status, String newStatus) {
+		BulkOrderRequest request = new BulkOrderRequest();
+		request.setStatus(status);
+		request.setNewStatus(newStatus);
+		request.setChunkSize(2);
+		return request;
+	}
+}
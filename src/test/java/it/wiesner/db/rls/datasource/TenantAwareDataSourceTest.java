@@ -0,0 +1,71 @@
+package it.wiesner.db.rls.datasource;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import it.wiesner.db.rls.dialect.DatabaseDialect;
+import it.wiesner.db.rls.dialect.MssqlDialect;
+import it.wiesner.db.rls.dialect.PostgresDialect;
+import it.wiesner.db.rls.dialect.TenantLimits;
+import it.wiesner.db.rls.session.RlsSessionHolder;
+
+class TenantAwareDataSourceTest {
+
+	private final DataSource target = mock(DataSource.class);
+	private final Connection connection = mock(Connection.class);
+	private final Statement statement = mock(Statement.class);
+	private final PreparedStatement preparedStatement = mock(PreparedStatement.class);
+	private final TenantLimits limits = new TenantLimits();
+
+	@BeforeEach
+	void mockConnection() throws SQLException {
+		when(target.getConnection()).thenReturn(connection);
+		when(connection.createStatement()).thenReturn(statement);
+		when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+		limits.setStatementTimeout(Duration.ofMillis(1500));
+		RlsSessionHolder.setRlsSession(1L);
+	}
+
+	@AfterEach
+	void clearSession() {
+		RlsSessionHolder.clear();
+	}
+
+	@Test
+	void appliesStatementTimeoutClientSideWithoutServerSupport() throws SQLException {
+		try (Connection proxy = dataSource(new MssqlDialect()).getConnection()) {
+			proxy.prepareStatement("SELECT 1");
+		}
+
+		verify(preparedStatement).setQueryTimeout(2);
+	}
+
+	@Test
+	void leavesStatementTimeoutToTheServerIfSupported() throws SQLException {
+		try (Connection proxy = dataSource(new PostgresDialect()).getConnection()) {
+			proxy.prepareStatement("SELECT 1");
+		}
+
+		verify(preparedStatement, never()).setQueryTimeout(anyInt());
+	}
+
+	private TenantAwareDataSource dataSource(DatabaseDialect dialect) {
+		return new TenantAwareDataSource(target, dialect, tenantId -> limits);
+	}
+}
@@ -0,0 +1,137 @@
+package it.wiesner.db.rls.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import it.wiesner.db.rls.PostgresTestDatabase;
+import it.wiesner.db.rls.dialect.PostgresDialect;
+import it.wiesner.db.rls.dialect.TenantLimits;
+import it.wiesner.db.rls.session.RlsSessionHolder;
+
+/**
+ * A statement running into the tenant's statement timeout must fail without poisoning the
+ * pooled connection for the next tenant.
+ */
+class TenantLimitsPostgresTest {
+
+	private static final long LIMITED_TENANT = 1L;
+	private static final long OTHER_TENANT = 2L;
+	private static final long INVALID_TENANT = 3L;
+
+	private HikariDataSource pool;
+	private TenantAwareDataSource dataSource;
+	private String defaultWorkMem;
+
+	@BeforeEach
+	void createPool() throws SQLException {
+		TenantLimits limits = new TenantLimits();
+		limits.setStatementTimeout(Duration.ofMillis(200));
+		limits.setLockTimeout(Duration.ofMillis(100));
+		limits.setWorkMem(DataSize.ofMegabytes(8));
+		// Below the PostgreSQL minimum of 64kB, setting the tenant context fails
+		TenantLimits invalidLimits = new TenantLimits();
+		invalidLimits.setWorkMem(DataSize.ofKilobytes(32));
+
+		pool = new HikariDataSource();
+		pool.setDataSource(PostgresTestDatabase.dataSource());
+		// A single connection, the next request is guaranteed to get the same one
+		pool.setMaximumPoolSize(1);
+		pool.setConnectionTimeout(2000);
+		dataSource = new TenantAwareDataSource(pool, new PostgresDialect(),
+				tenantId -> tenantId == LIMITED_TENANT ? limits : tenantId == INVALID_TENANT ? invalidLimits : null);
+		try (Connection connection = pool.getConnection(); Statement sql = connection.createStatement()) {
+			defaultWorkMem = show(sql, "work_mem");
+		}
+	}
+
+	@AfterEach
+	void closePool() {
+		RlsSessionHolder.clear();
+		pool.close();
+	}
+
+	@Test
+	void statementTimeoutCancelsQueryAndConnectionIsReset() throws SQLException {
+		int backendPid;
+		RlsSessionHolder.setRlsSession(LIMITED_TENANT);
+		try (Connection connection = dataSource.getConnection(); Statement sql = connection.createStatement()) {
+			backendPid = backendPid(sql);
+			SQLException e = assertThrows(SQLException.class, () -> sql.execute("SELECT pg_sleep(1)"));
+			// query_canceled
+			assertEquals("57014", e.getSQLState());
+		}
+
+		assertNextRequestGetsResetConnection(backendPid);
+	}
+
+	@Test
+	void timeoutInsideTransactionIsRolledBackAndConnectionIsReset() throws SQLException {
+		int backendPid;
+		RlsSessionHolder.setRlsSession(LIMITED_TENANT);
+		try (Connection connection = dataSource.getConnection(); Statement sql = connection.createStatement()) {
+			backendPid = backendPid(sql);
+			connection.setAutoCommit(false);
+			SQLException e = assertThrows(SQLException.class, () -> sql.execute("SELECT pg_sleep(1)"));
+			assertEquals("57014", e.getSQLState());
+			// Closed without rollback, the transaction is still aborted
+		}
+
+		assertNextRequestGetsResetConnection(backendPid);
+	}
+
+	@Test
+	void failingTenantContextDoesNotLeakPooledConnection() throws SQLException {
+		RlsSessionHolder.setRlsSession(INVALID_TENANT);
+		for (int i = 0; i < 3; i++) {
+			SQLException e = assertThrows(SQLException.class, () -> dataSource.getConnection());
+			// invalid_parameter_value, not a pool timeout
+			assertEquals("22023", e.getSQLState());
+		}
+
+		RlsSessionHolder.setRlsSession(OTHER_TENANT);
+		try (Connection connection = dataSource.getConnection(); Statement sql = connection.createStatement()) {
+			assertEquals("2", show(sql, "app.tenant_id"));
+			assertEquals(defaultWorkMem, show(sql, "work_mem"));
+		}
+	}
+
+	private void assertNextRequestGetsResetConnection(int backendPid) throws SQLException {
+		RlsSessionHolder.setRlsSession(OTHER_TENANT);
+		try (Connection connection = dataSource.getConnection(); Statement sql = connection.createStatement()) {
+			// Same physical connection, it was reset and not evicted
+			assertEquals(backendPid, backendPid(sql));
+			assertEquals("2", show(sql, "app.tenant_id"));
+			assertEquals("0", show(sql, "statement_timeout"));
+			assertEquals("0", show(sql, "lock_timeout"));
+			assertEquals(defaultWorkMem, show(sql, "work_mem"));
+			sql.execute("SELECT pg_sleep(0.3)");
+		}
+	}
+
+	private static int backendPid(Statement sql) throws SQLException {
+		try (ResultSet result = sql.executeQuery("SELECT pg_backend_pid()")) {
+			result.next();
+			return result.getInt(1);
+		}
+	}
+
+	private static String show(Statement sql, String setting) throws SQLException {
+		try (ResultSet result = sql.executeQuery("SELECT current_setting('" + setting + "', TRUE)")) {
+			result.next();
+			return result.getString(1);
+		}
+	}
+}
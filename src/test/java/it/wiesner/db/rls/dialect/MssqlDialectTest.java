@@ -0,0 +1,102 @@
+package it.wiesner.db.rls.dialect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class MssqlDialectTest {
+
+	private final MssqlDialect dialect = new MssqlDialect();
+
+	@Test
+	void tenantPredicateCastsOnlyTheSessionValue() {
+		assertEquals("tenant_id = CAST(SESSION_CONTEXT(N'TenantId') AS bigint)", dialect.tenantPredicate("tenant_id"));
+	}
+
+	@Test
+	void createTenantPolicyDdlNeverDropsThePolicy() {
+		List<String> ddl = dialect.createTenantPolicyDdl(List.of(new TenantScopedTable("orders", "tenant_id"),
+				new TenantScopedTable("archive.orders_archive", "tenant_id")));
+
+		assertEquals(List.of(
+				"IF OBJECT_ID(N'dbo.TenantAccessPredicate', N'IF') IS NULL EXEC(N'CREATE FUNCTION dbo.TenantAccessPredicate(@tenant_id bigint) "
+						+ "RETURNS TABLE WITH SCHEMABINDING AS RETURN SELECT 1 AS TenantAccessPredicateResult "
+						+ "WHERE @tenant_id = CAST(SESSION_CONTEXT(N''TenantId'') AS bigint)')",
+				"IF OBJECT_ID(N'dbo.TenantAccessPolicy', N'SP') IS NULL EXEC(N'CREATE SECURITY POLICY dbo.TenantAccessPolicy "
+						+ "ADD FILTER PREDICATE dbo.TenantAccessPredicate(tenant_id) ON dbo.orders WITH (STATE = ON)')",
+				"IF EXISTS (SELECT 1 FROM sys.security_predicates WHERE object_id = OBJECT_ID(N'dbo.TenantAccessPolicy') "
+						+ "AND target_object_id = OBJECT_ID(N'dbo.orders') AND predicate_type = 0) "
+						+ "ALTER SECURITY POLICY dbo.TenantAccessPolicy ALTER FILTER PREDICATE dbo.TenantAccessPredicate(tenant_id) ON dbo.orders "
+						+ "ELSE ALTER SECURITY POLICY dbo.TenantAccessPolicy ADD FILTER PREDICATE dbo.TenantAccessPredicate(tenant_id) ON dbo.orders",
+				"IF EXISTS (SELECT 1 FROM sys.security_predicates WHERE object_id = OBJECT_ID(N'dbo.TenantAccessPolicy') "
+						+ "AND target_object_id = OBJECT_ID(N'dbo.orders') AND predicate_type = 1) "
+						+ "ALTER SECURITY POLICY dbo.TenantAccessPolicy ALTER BLOCK PREDICATE dbo.TenantAccessPredicate(tenant_id) ON dbo.orders "
+						+ "ELSE ALTER SECURITY POLICY dbo.TenantAccessPolicy ADD BLOCK PREDICATE dbo.TenantAccessPredicate(tenant_id) ON dbo.orders",
+				"IF EXISTS (SELECT 1 FROM sys.security_predicates WHERE object_id = OBJECT_ID(N'dbo.TenantAccessPolicy') "
+						+ "AND target_object_id = OBJECT_ID(N'archive.orders_archive') AND predicate_type = 0) "
+						+ "ALTER SECURITY POLICY dbo.TenantAccessPolicy ALTER FILTER PREDICATE dbo.TenantAccessPredicate(tenant_id) ON archive.orders_archive "
+						+ "ELSE ALTER SECURITY POLICY dbo.TenantAccessPolicy ADD FILTER PREDICATE dbo.TenantAccessPredicate(tenant_id) ON archive.orders_archive",
+				"IF EXISTS (SELECT 1 FROM sys.security_predicates WHERE object_id = OBJECT_ID(N'dbo.TenantAccessPolicy') "
+						+ "AND target_object_id = OBJECT_ID(N'archive.orders_archive') AND predicate_type = 1) "
+						+ "ALTER SECURITY POLICY dbo.TenantAccessPolicy ALTER BLOCK PREDICATE dbo.TenantAccessPredicate(tenant_id) ON archive.orders_archive "
+						+ "ELSE ALTER SECURITY POLICY dbo.TenantAccessPolicy ADD BLOCK PREDICATE dbo.TenantAccessPredicate(tenant_id) ON archive.orders_archive",
+				"ALTER SECURITY POLICY dbo.TenantAccessPolicy WITH (STATE = ON)"), ddl);
+	}
+
+	@Test
+	void existingPredicateFunctionMatchesIgnoringFormatting() {
+		// As created by CreateDatabase_MSSQL.sql
+		assertTrue(dialect.isCurrentPredicateFunction("CREATE FUNCTION TenantAccessPredicate( @tenant_id bigint )\n"
+				+ "\tRETURNS TABLE  WITH SCHEMABINDING AS\n"
+				+ "\t\tRETURN  SELECT 1 AS TenantAccessPredicateResult  WHERE @tenant_id = CAST(SESSION_CONTEXT(N'TenantId') AS bigint);"));
+	}
+
+	@Test
+	void existingPredicateFunctionWithOtherPredicateDiffers() {
+		assertFalse(dialect.isCurrentPredicateFunction("CREATE FUNCTION dbo.TenantAccessPredicate(@tenant_id bigint) "
+				+ "RETURNS TABLE WITH SCHEMABINDING AS RETURN SELECT 1 AS TenantAccessPredicateResult "
+				+ "WHERE CONVERT(nvarchar(20), @tenant_id) = SESSION_CONTEXT(N'TenantId')"));
+	}
+
+	@Test
+	void clearTenantContextKeepsServerQueryGovernorIfNoTenantLimitWasApplied() throws SQLException {
+		Connection connection = mock(Connection.class);
+		Statement statement = mock(Statement.class);
+		when(connection.createStatement()).thenReturn(statement);
+
+		dialect.clearTenantContext(connection, new TenantLimits());
+
+		verify(statement).execute("EXEC sys.sp_set_session_context @key = N'TenantId', @value = -1; SET LOCK_TIMEOUT -1");
+	}
+
+	@Test
+	void clearTenantContextRestoresServerQueryGovernor() throws SQLException {
+		Connection connection = mock(Connection.class);
+		Statement statement = mock(Statement.class);
+		ResultSet serverLimit = mock(ResultSet.class);
+		when(connection.createStatement()).thenReturn(statement);
+		when(statement.executeQuery(
+				"SELECT CONVERT(int, value_in_use) FROM sys.configurations WHERE name = N'query governor cost limit'"))
+				.thenReturn(serverLimit);
+		when(serverLimit.next()).thenReturn(true);
+		when(serverLimit.getInt(1)).thenReturn(3000);
+		TenantLimits limits = new TenantLimits();
+		limits.setQueryGovernorCostLimit(500);
+
+		dialect.clearTenantContext(connection, limits);
+
+		verify(statement).execute("EXEC sys.sp_set_session_context @key = N'TenantId', @value = -1; "
+				+ "SET LOCK_TIMEOUT -1; SET QUERY_GOVERNOR_COST_LIMIT 3000");
+	}
+}
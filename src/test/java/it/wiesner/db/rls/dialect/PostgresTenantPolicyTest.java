@@ -0,0 +1,118 @@
+package it.wiesner.db.rls.dialect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import it.wiesner.db.rls.PostgresTestDatabase;
+
+/**
+ * Runs the policies of PostgresDialect.createTenantPolicyDdl against PostgreSQL, as the table
+ * owner and as an application role that does not own the table.
+ */
+class PostgresTenantPolicyTest {
+
+	private static final String SCHEMA = "rls_policy_test";
+
+	private static PGSimpleDataSource dataSource;
+
+	@BeforeAll
+	static void createSchema() throws SQLException {
+		dataSource = PostgresTestDatabase.dataSource();
+		try (Connection connection = dataSource.getConnection(); Statement sql = connection.createStatement()) {
+			sql.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+			sql.execute("DROP ROLE IF EXISTS rls_test_owner");
+			sql.execute("DROP ROLE IF EXISTS rls_test_app");
+			sql.execute("CREATE ROLE rls_test_owner");
+			sql.execute("CREATE ROLE rls_test_app");
+			sql.execute("CREATE SCHEMA " + SCHEMA + " AUTHORIZATION rls_test_owner");
+			sql.execute("GRANT USAGE ON SCHEMA " + SCHEMA + " TO rls_test_app");
+
+			sql.execute("SET ROLE rls_test_owner");
+			sql.execute("SET search_path = " + SCHEMA);
+			sql.execute("CREATE TABLE orders (order_id bigint PRIMARY KEY, order_number varchar(50), "
+					+ "tenant_id bigint NOT NULL, order_date date, order_status varchar(50), customername varchar(100))");
+			sql.execute("CREATE INDEX idx_orders_tenant_id ON orders(tenant_id)");
+			// 100 tenants with 100 orders each
+			sql.execute("INSERT INTO orders SELECT i, 'ORD-' || i, i % 100, DATE '2025-01-01', 'PENDING', 'Customer' "
+					+ "FROM generate_series(1, 10000) i");
+			sql.execute("ANALYZE orders");
+			sql.execute("GRANT SELECT, INSERT, UPDATE, DELETE ON orders TO rls_test_app");
+
+			// Installed by the owner in one transaction, like the RlsPolicyInstaller does
+			connection.setAutoCommit(false);
+			for (String ddl : new PostgresDialect().createTenantPolicyDdl(List.of(new TenantScopedTable("orders", "tenant_id")))) {
+				sql.execute(ddl);
+			}
+			connection.commit();
+		}
+	}
+
+	@Test
+	void tenantFilterIsIndexConditionForApplicationRole() throws SQLException {
+		try (Connection connection = connect("rls_test_app", 7); Statement sql = connection.createStatement()) {
+			String plan = explain(sql, "SELECT * FROM orders");
+
+			assertTrue(plan.contains("idx_orders_tenant_id"), plan);
+			assertTrue(plan.contains("Index Cond: (tenant_id = (NULLIF(current_setting('app.tenant_id'::text, true), ''::text))::bigint)"), plan);
+			assertEquals(100, count(sql));
+		}
+	}
+
+	@Test
+	void policyAppliesToTableOwner() throws SQLException {
+		try (Connection connection = connect("rls_test_owner", 7); Statement sql = connection.createStatement()) {
+			assertEquals(100, count(sql));
+
+			sql.execute("RESET app.tenant_id");
+			assertEquals(0, count(sql));
+		}
+	}
+
+	@Test
+	void insertForOtherTenantIsRejected() throws SQLException {
+		try (Connection connection = connect("rls_test_app", 7); Statement sql = connection.createStatement()) {
+			SQLException e = assertThrows(SQLException.class, () -> sql.execute(
+					"INSERT INTO orders VALUES (20000, 'ORD-20000', 8, DATE '2025-01-01', 'PENDING', 'Customer')"));
+			// insufficient_privilege, raised for a violated WITH CHECK policy
+			assertEquals("42501", e.getSQLState());
+		}
+	}
+
+	private static Connection connect(String role, long tenantId) throws SQLException {
+		Connection connection = dataSource.getConnection();
+		try (Statement sql = connection.createStatement()) {
+			sql.execute("SET ROLE " + role);
+			sql.execute("SET search_path = " + SCHEMA);
+			new PostgresDialect().setTenantContext(connection, tenantId);
+		}
+		return connection;
+	}
+
+	private static String explain(Statement sql, String query) throws SQLException {
+		StringBuilder plan = new StringBuilder();
+		try (ResultSet rows = sql.executeQuery("EXPLAIN (COSTS OFF) " + query)) {
+			while (rows.next()) {
+				plan.append(rows.getString(1)).append('\n');
+			}
+		}
+		return plan.toString();
+	}
+
+	private static long count(Statement sql) throws SQLException {
+		try (ResultSet rows = sql.executeQuery("SELECT count(*) FROM orders")) {
+			rows.next();
+			return rows.getLong(1);
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package it.wiesner.db.rls.interceptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class AdminTokenInterceptorTest {
+
+    private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/admin/reports/orders-per-tenant");
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Test
+    void rejectsEveryoneWithoutConfiguredToken() throws Exception {
+        request.addHeader(AdminTokenInterceptor.ADMIN_TOKEN_HEADER, "");
+
+        assertFalse(new AdminTokenInterceptor("").preHandle(request, response, null));
+        assertEquals(403, response.getStatus());
+    }
+
+    @Test
+    void rejectsMissingToken() throws Exception {
+        assertFalse(new AdminTokenInterceptor("secret").preHandle(request, response, null));
+        assertEquals(401, response.getStatus());
+    }
+
+    @Test
+    void rejectsWrongToken() throws Exception {
+        request.addHeader(AdminTokenInterceptor.ADMIN_TOKEN_HEADER, "secreT");
+
+        assertFalse(new AdminTokenInterceptor("secret").preHandle(request, response, null));
+        assertEquals(401, response.getStatus());
+    }
+
+    @Test
+    void acceptsConfiguredToken() throws Exception {
+        request.addHeader(AdminTokenInterceptor.ADMIN_TOKEN_HEADER, "secret");
+
+        assertTrue(new AdminTokenInterceptor("secret").preHandle(request, response, null));
+        assertEquals(200, response.getStatus());
+    }
+}
@@ -0,0 +1,135 @@
+package it.wiesner.db.rls.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import it.wiesner.db.rls.metrics.TenantLoadSketch.Metric;
+import it.wiesner.db.rls.metrics.TenantLoadSketch.TenantLoad;
+
+class TenantLoadSketchTest {
+
+	// 6 buckets of 10 seconds
+	private static final Duration WINDOW = Duration.ofSeconds(60);
+	private static final Duration BUCKET = Duration.ofSeconds(10);
+
+	private final MutableClock clock = new MutableClock();
+
+	@Test
+	void sumsTheBucketsWithinTheWindow() {
+		TenantLoadSketch sketch = sketch(16);
+		sketch.record(1L, Metric.REQUESTS, 3);
+		clock.advance(BUCKET);
+		sketch.record(1L, Metric.REQUESTS, 2);
+		sketch.record(1L, Metric.ROWS_RETURNED, 40);
+
+		TenantLoad load = sketch.topTenants(Metric.REQUESTS, 10).get(0);
+		assertEquals(5, load.getRequests());
+		assertEquals(40, load.getRowsReturned());
+	}
+
+	@Test
+	void bucketsOutsideTheWindowAreNotCounted() {
+		TenantLoadSketch sketch = sketch(16);
+		sketch.record(1L, Metric.REQUESTS, 3);
+		clock.advance(BUCKET);
+		sketch.record(1L, Metric.REQUESTS, 2);
+
+		clock.advance(WINDOW.minus(BUCKET));
+		assertEquals(2, sketch.topTenants(Metric.REQUESTS, 10).get(0).getRequests());
+
+		clock.advance(BUCKET);
+		assertEquals(0, sketch.topTenants(Metric.REQUESTS, 10).get(0).getRequests());
+	}
+
+	@Test
+	void reusedBucketIsResetOnRotation() {
+		TenantLoadSketch sketch = sketch(16);
+		sketch.record(1L, Metric.REQUESTS, 3);
+		// Same bucket slot one window later
+		clock.advance(WINDOW);
+		sketch.record(1L, Metric.REQUESTS, 2);
+
+		assertEquals(2, sketch.topTenants(Metric.REQUESTS, 10).get(0).getRequests());
+	}
+
+	@Test
+	void newTenantsAreNotAdmittedWhileTheCandidatesAreFull() {
+		TenantLoadSketch sketch = sketch(2);
+		sketch.record(1L, Metric.REQUESTS, 1);
+		sketch.record(2L, Metric.REQUESTS, 1);
+		sketch.record(3L, Metric.REQUESTS, 100);
+
+		assertEquals(Set.of(1L, 2L), tenants(sketch, Metric.REQUESTS));
+	}
+
+	@Test
+	void pruningKeepsTheHeaviestTenantOfEveryMetric() {
+		// Room for 6 candidates, pruning keeps the heaviest tenant per metric
+		TenantLoadSketch sketch = sketch(6);
+		sketch.record(1L, Metric.REQUESTS, 10);
+		for (long tenantId = 2; tenantId <= 6; tenantId++) {
+			sketch.record(tenantId, Metric.REQUESTS, 1);
+		}
+		// Few requests, but most rows and longest connection holds
+		sketch.record(2L, Metric.ROWS_RETURNED, 100_000);
+		sketch.record(3L, Metric.CONNECTION_HOLD_MICROS, 5_000_000);
+
+		// The next bucket prunes the full candidate set before tenant 7 is admitted
+		clock.advance(BUCKET);
+		sketch.record(7L, Metric.REQUESTS, 1);
+
+		assertEquals(Set.of(1L, 2L, 3L, 7L), tenants(sketch, Metric.REQUESTS));
+		assertEquals(2L, sketch.topTenants(Metric.ROWS_RETURNED, 1).get(0).getTenantId());
+		assertEquals(3L, sketch.topTenants(Metric.CONNECTION_HOLD_MICROS, 1).get(0).getTenantId());
+	}
+
+	@Test
+	void tenantsNotSeenWithinTheWindowArePruned() {
+		TenantLoadSketch sketch = sketch(16);
+		sketch.record(1L, Metric.REQUESTS, 1);
+		clock.advance(WINDOW);
+		sketch.record(2L, Metric.REQUESTS, 1);
+
+		assertEquals(Set.of(2L), sketch.getRecentTenants());
+	}
+
+	private TenantLoadSketch sketch(int candidates) {
+		return new TenantLoadSketch(4, 1024, WINDOW, 6, candidates, clock);
+	}
+
+	private static Set<Long> tenants(TenantLoadSketch sketch, Metric metric) {
+		return sketch.topTenants(metric, 100).stream().map(TenantLoad::getTenantId).collect(Collectors.toSet());
+	}
+
+	private static class MutableClock extends Clock {
+		private Instant now = Instant.ofEpochSecond(1_000_000);
+
+		void advance(Duration duration) {
+			now = now.plus(duration);
+		}
+
+		@Override
+		public Instant instant() {
+			return now;
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package it.wiesner.db.rls.reporting;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import it.wiesner.db.rls.datamodel.OrdersRepository;
+import it.wiesner.db.rls.session.RlsSessionHolder;
+
+class TenantReportingServiceTest {
+
+	// One worker, a query that is not cancelled blocks every later report
+	private final TenantReportingService service = new TenantReportingService(mock(OrdersRepository.class),
+			mock(PlatformTransactionManager.class), 1);
+	private final Set<Long> queriedTenants = ConcurrentHashMap.newKeySet();
+	private final CountDownLatch slowQueryInterrupted = new CountDownLatch(1);
+
+	@AfterEach
+	void shutdown() {
+		service.shutdown();
+	}
+
+	@Test
+	void failingConsumerCancelsRemainingTenants() throws InterruptedException {
+		UncheckedIOException e = assertThrows(UncheckedIOException.class,
+				() -> service.forEachTenant(List.of(1L, 2L, 3L), slowAfterFirstTenant(), result -> {
+					throw new UncheckedIOException(new IOException("Broken pipe"));
+				}));
+
+		assertEquals("Broken pipe", e.getCause().getMessage());
+		assertFalse(queriedTenants.contains(3L), "Queued tenant was queried after the report was aborted");
+		if (queriedTenants.contains(2L)) {
+			assertTrue(slowQueryInterrupted.await(5, TimeUnit.SECONDS), "Running tenant query was not cancelled");
+		}
+
+		// The worker is free again for the next report
+		List<Long> reported = new ArrayList<>();
+		assertTimeoutPreemptively(Duration.ofSeconds(5),
+				() -> service.forEachTenant(List.of(4L), repository -> 1L, result -> reported.add(result.getTenantId())));
+		assertEquals(List.of(4L), reported);
+	}
+
+	private Function<OrdersRepository, Long> slowAfterFirstTenant() {
+		return repository -> {
+			Long tenantId = RlsSessionHolder.getRlsSession().tenantId;
+			queriedTenants.add(tenantId);
+			if (tenantId != 1L) {
+				try {
+					Thread.sleep(60_000);
+				} catch (InterruptedException e) {
+					slowQueryInterrupted.countDown();
+					Thread.currentThread().interrupt();
+				}
+			}
+			return tenantId;
+		};
+	}
+}